@@ -13,6 +13,9 @@ import androidx.core.view.WindowCompat;
 import androidx.fragment.app.Fragment;
 
 import com.example.bossapp.business.LocalNotificationHelper;
+import com.example.bossapp.data.repository.AllianceRepository;
+import com.example.bossapp.data.repository.FriendRepository;
+import com.example.bossapp.data.repository.NotificationRepository;
 import com.example.bossapp.presentation.alliance.AllianceFragment;
 import com.example.bossapp.presentation.boss.BossFightActivity;
 import com.example.bossapp.presentation.home.HomeFragment;
@@ -23,11 +26,16 @@ import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.navigation.NavigationBarView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -38,7 +46,12 @@ public class MainActivity extends AppCompatActivity {
     private List<String> navigationStack = new ArrayList<>();
 
     private List<ListenerRegistration> notificationListeners = new ArrayList<>();
+    // Poslednji obrađeni timestamp po notifikaciji saveza
+    private final Map<String, Long> seenNotificationTimestamps = new HashMap<>();
     private LocalNotificationHelper notificationHelper;
+    private FriendRepository friendRepository;
+    private AllianceRepository allianceRepository;
+    private NotificationRepository notificationRepository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,6 +61,9 @@ public class MainActivity extends AppCompatActivity {
 
         bottomNavigationView = findViewById(R.id.bottomNavigation);
         notificationHelper = new LocalNotificationHelper(this);
+        friendRepository = new FriendRepository();
+        allianceRepository = new AllianceRepository();
+        notificationRepository = new NotificationRepository();
 
         if (savedInstanceState == null) {
             loadFragment(new HomeFragment(), "HOME");
@@ -142,10 +158,8 @@ public class MainActivity extends AppCompatActivity {
         Log.d(TAG, "Listener start time: " + listenerStartTime);
 
         // 1. Friend Requests
-        ListenerRegistration friendRequestListener = db.collection("friendRequests")
-                .whereEqualTo("receiverId", currentUserId)
-                .whereEqualTo("status", "pending")
-                .addSnapshotListener((snapshots, error) -> {
+        ListenerRegistration friendRequestListener = friendRepository.listenToFriendRequests(currentUserId,
+                (snapshots, error) -> {
                     if (error != null) {
                         Log.e(TAG, "Friend request listener error", error);
                         return;
@@ -210,10 +224,8 @@ public class MainActivity extends AppCompatActivity {
         notificationListeners.add(friendAcceptedListener);
 
         // 3. Alliance Invitations
-        ListenerRegistration allianceInviteListener = db.collection("allianceInvitations")
-                .whereEqualTo("receiverId", currentUserId)
-                .whereEqualTo("status", "pending")
-                .addSnapshotListener((snapshots, error) -> {
+        ListenerRegistration allianceInviteListener = allianceRepository.listenToPendingInvitations(currentUserId,
+                (snapshots, error) -> {
                     if (error != null) {
                         Log.e(TAG, "Alliance invitation listener error", error);
                         return;
@@ -241,61 +253,80 @@ public class MainActivity extends AppCompatActivity {
                 });
         notificationListeners.add(allianceInviteListener);
 
-        // 4. Alliance Notifications (accepted/declined/messages)
-        ListenerRegistration allianceNotifListener = db.collection("notifications")
-                .whereEqualTo("userId", currentUserId)
-                .whereEqualTo("read", false)
-                .addSnapshotListener((snapshots, error) -> {
-                    if (error != null) {
-                        Log.e(TAG, "Alliance notification listener error", error);
-                        return;
-                    }
-
-                    if (snapshots == null) return;
+        // 4. Alliance Notifications (accepted/declined/messages) - samo notifikacije posle pokretanja.
+        // Kanal se deli sa NotificationsFragment-om, pa je upit ograničen kursorom allRead,
+        // a notifikacije starije od listenerStartTime se filtriraju ovde.
+        seenNotificationTimestamps.clear();
+        notificationRepository.getReadCursors(currentUserId, new NotificationRepository.OnReadCursorsLoadListener() {
+            @Override
+            public void onSuccess(NotificationRepository.ReadCursors cursors) {
+                if (isDestroyed()) return;
+                notificationListeners.add(notificationRepository.listenToNotifications(
+                        currentUserId, cursors.getAllRead(),
+                        (snapshots, error) -> onAllianceNotifications(snapshots, error, listenerStartTime)));
+            }
 
-                    for (DocumentChange change : snapshots.getDocumentChanges()) {
-                        if (change.getType() == DocumentChange.Type.ADDED) {
-                            Long timestamp = change.getDocument().getLong("timestamp");
-                            if (timestamp != null && timestamp > listenerStartTime) {
-                                String type = change.getDocument().getString("type");
-
-                                if ("alliance_accepted".equals(type)) {
-                                    String username = change.getDocument().getString("acceptedUsername");
-                                    String allianceName = change.getDocument().getString("allianceName");
-
-                                    Log.d(TAG, username + " accepted alliance invitation (timestamp: " +
-                                            timestamp + ")");
-                                    notificationHelper.showAllianceAcceptedNotification(username, allianceName);
-
-                                } else if ("alliance_declined".equals(type)) {
-                                    String username = change.getDocument().getString("declinedUsername");
-                                    String allianceName = change.getDocument().getString("allianceName");
-
-                                    Log.d(TAG, username + " declined alliance invitation (timestamp: " +
-                                            timestamp + ")");
-                                    notificationHelper.showAllianceDeclinedNotification(username, allianceName);
-
-                                } else if ("alliance_message".equals(type)) {
-                                    String senderUsername = change.getDocument().getString("senderUsername");
-                                    String messageText = change.getDocument().getString("messageText");
-                                    String allianceId = change.getDocument().getString("allianceId");
-
-                                    Log.d(TAG, "NEW alliance message from: " + senderUsername +
-                                            " (timestamp: " + timestamp + ")");
-                                    notificationHelper.showAllianceMessageNotification(
-                                            senderUsername, messageText, allianceId);
-                                }
-                            } else {
-                                Log.d(TAG, "Ignoring OLD notification (timestamp: " + timestamp + ")");
-                            }
-                        }
-                    }
-                });
-        notificationListeners.add(allianceNotifListener);
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error loading read cursors", e);
+            }
+        });
 
         Log.d(TAG, "All notification listeners started successfully");
     }
 
+    private void onAllianceNotifications(QuerySnapshot snapshots, FirebaseFirestoreException error,
+                                         long listenerStartTime) {
+        if (error != null) {
+            Log.e(TAG, "Alliance notification listener error", error);
+            return;
+        }
+
+        if (snapshots == null) return;
+
+        // Notifikacija za chat je jedna po savezu, pa nova poruka samo menja njen timestamp.
+        // Poredi se ceo snapshot sa već viđenim, jer RealtimeHub može da ponovi stari snapshot.
+        for (DocumentSnapshot doc : snapshots.getDocuments()) {
+            Long timestamp = doc.getLong("timestamp");
+            if (timestamp == null || timestamp.equals(seenNotificationTimestamps.put(doc.getId(), timestamp))) {
+                continue;
+            }
+
+            if (timestamp > listenerStartTime) {
+                String type = doc.getString("type");
+
+                if ("alliance_accepted".equals(type)) {
+                    String username = doc.getString("acceptedUsername");
+                    String allianceName = doc.getString("allianceName");
+
+                    Log.d(TAG, username + " accepted alliance invitation (timestamp: " +
+                            timestamp + ")");
+                    notificationHelper.showAllianceAcceptedNotification(username, allianceName);
+
+                } else if ("alliance_declined".equals(type)) {
+                    String username = doc.getString("declinedUsername");
+                    String allianceName = doc.getString("allianceName");
+
+                    Log.d(TAG, username + " declined alliance invitation (timestamp: " +
+                            timestamp + ")");
+                    notificationHelper.showAllianceDeclinedNotification(username, allianceName);
+
+                } else if ("alliance_message".equals(type)) {
+                    String senderUsername = doc.getString("senderUsername");
+                    String messageText = doc.getString("messageText");
+                    String allianceId = doc.getString("allianceId");
+
+                    Log.d(TAG, "NEW alliance message from: " + senderUsername +
+                            " (timestamp: " + timestamp + ")");
+                    notificationHelper.showAllianceMessageNotification(
+                            senderUsername, messageText, allianceId);
+                }
+            } else {
+                Log.d(TAG, "Ignoring OLD notification (timestamp: " + timestamp + ")");
+            }
+        }
+    }
+
     private void handleNotificationIntent(Intent intent) {
         if (intent == null) {
             Log.d(TAG, "Intent is null");
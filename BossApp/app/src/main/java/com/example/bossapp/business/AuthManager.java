@@ -6,6 +6,7 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.example.bossapp.data.local.SharedPrefsManager;
 import com.example.bossapp.data.model.User;
+import com.example.bossapp.data.repository.UserCache;
 import com.example.bossapp.data.repository.UserRepository;
 import com.google.firebase.auth.AuthCredential;
 import com.google.firebase.auth.EmailAuthProvider;
@@ -204,6 +205,7 @@ public class AuthManager {
     public void signOut() {
         auth.signOut();
         prefsManager.clearSession();
+        UserCache.getInstance().clear();
         Log.d(TAG, "Korisnik odjavljen");
     }
 
@@ -6,9 +6,9 @@ import com.example.bossapp.data.model.Boss;
 import com.example.bossapp.data.model.MemberProgress;
 import com.example.bossapp.data.model.User;
 import com.example.bossapp.data.repository.AllianceRepository;
+import com.example.bossapp.data.repository.UserLedger;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -26,7 +26,7 @@ public class BossBattleManager {
     private int coinsReward;
     private boolean battleEnded;
 
-    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final UserLedger userLedger = new UserLedger();
 
     public interface OnBattleResultListener {
         void onBattleResult(boolean bossDefeated, int coinsEarned, boolean itemDropped);
@@ -132,12 +132,18 @@ public class BossBattleManager {
     }
 
     private void updatePlayerCoins(int coinsEarned) {
-        int newTotal = player.getCoins() + coinsEarned;
-        player.setCoins(newTotal);
+        player.setCoins(player.getCoins() + coinsEarned);
 
-        db.collection("users").document(player.getUserId())
-                .update("coins", newTotal)
-                .addOnSuccessListener(unused -> Log.d(TAG, "💰 Coins updated: " + newTotal))
-                .addOnFailureListener(e -> Log.e(TAG, "❌ Greška pri ažuriranju coins-a: " + e.getMessage()));
+        userLedger.addCoins(player.getUserId(), coinsEarned, new UserLedger.OnLedgerListener() {
+            @Override
+            public void onSuccess() {
+                Log.d(TAG, "💰 Coins updated: +" + coinsEarned);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "❌ Greška pri ažuriranju coins-a: " + e.getMessage());
+            }
+        });
     }
 }
@@ -2,10 +2,10 @@ package com.example.bossapp.business;
 
 import com.example.bossapp.data.model.BossFight;
 import com.example.bossapp.data.model.User;
-import com.example.bossapp.data.repository.UserRepository;
+import com.example.bossapp.data.repository.UserLedger;
 
 public class BossFightManager {
-    private final UserRepository userRepository;
+    private final UserLedger userLedger;
 
     public interface OnFightResultListener {
         void onSuccess(String message, int rewardCoins, boolean bossDefeated);
@@ -13,7 +13,7 @@ public class BossFightManager {
     }
 
     public BossFightManager() {
-        this.userRepository = new UserRepository();
+        this.userLedger = new UserLedger();
     }
 
     public BossFight createBossFight(User user, int successRate) {
@@ -23,11 +23,11 @@ public class BossFightManager {
 
     public void finishFight(User user, BossFight fight, OnFightResultListener listener) {
         int reward = fight.calculateReward();
-        user.setCoins(user.getCoins() + reward);
 
-        userRepository.saveUser(user, new UserRepository.OnUserSaveListener() {
+        userLedger.addCoins(user.getUserId(), reward, new UserLedger.OnLedgerListener() {
             @Override
             public void onSuccess() {
+                user.setCoins(user.getCoins() + reward);
                 listener.onSuccess("Borba završena!", reward, fight.isBossDefeated());
             }
 
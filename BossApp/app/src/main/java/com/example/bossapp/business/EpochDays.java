@@ -0,0 +1,63 @@
+package com.example.bossapp.business;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Pomoćne metode za rad sa danima kao brojem dana od 1970-01-01 (lokalno vreme).
+ *
+ * Dan predstavljen kao int/long se poredi i oduzima bez pravljenja Calendar objekata.
+ */
+public final class EpochDays {
+    public static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private EpochDays() {}
+
+    public static long toEpochDay(long millis) {
+        return Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), DAY_MILLIS);
+    }
+
+    public static long toEpochDay(Date date) {
+        return toEpochDay(date.getTime());
+    }
+
+    /**
+     * Dan iz godine, meseca (1-12) i dana u mesecu.
+     */
+    public static long toEpochDay(int year, int month, int dayOfMonth) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + dayOfMonth - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Vraća {godina, mesec (1-12), dan u mesecu} za zadati dan.
+     */
+    public static int[] toYearMonthDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return new int[]{year, month, day};
+    }
+
+    /**
+     * Lokalno vreme u milisekundama za dati dan i vreme u danu.
+     */
+    public static long toMillis(long epochDay, long millisOfDay) {
+        long utc = epochDay * DAY_MILLIS + millisOfDay;
+        return utc - TimeZone.getDefault().getOffset(utc - TimeZone.getDefault().getRawOffset());
+    }
+
+    public static long millisOfDay(long millis) {
+        return Math.floorMod(millis + TimeZone.getDefault().getOffset(millis), DAY_MILLIS);
+    }
+}
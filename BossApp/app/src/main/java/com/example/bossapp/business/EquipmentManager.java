@@ -5,19 +5,20 @@ import android.util.Log;
 import com.example.bossapp.data.model.Equipment;
 import com.example.bossapp.data.model.User;
 import com.example.bossapp.data.repository.EquipmentRepository;
-import com.example.bossapp.data.repository.UserRepository;
+import com.example.bossapp.data.repository.UserLedger;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class EquipmentManager {
 
     private static final String TAG = "EquipmentManager";
     private final EquipmentRepository equipmentRepository;
-    private final UserRepository userRepository;
+    private final UserLedger userLedger;
 
     public EquipmentManager() {
         this.equipmentRepository = new EquipmentRepository();
-        this.userRepository = new UserRepository();
+        this.userLedger = new UserLedger();
     }
 
     public interface OnPurchaseListener {
@@ -57,40 +58,44 @@ public class EquipmentManager {
 
         Equipment finalEquipment = equipment;
 
-        // Add equipment to the database
-        equipmentRepository.addEquipment(equipment, new EquipmentRepository.OnEquipmentListener() {
+        // Naplata i upis opreme u jednoj transakciji
+        equipmentRepository.purchaseEquipment(finalEquipment, price, new EquipmentRepository.OnEquipmentListener() {
             @Override
             public void onSuccess() {
-                // Subtract coins
                 user.setCoins(user.getCoins() - price);
+                Log.d(TAG, "Purchase successful: " + finalEquipment.getDisplayName());
+                listener.onSuccess("Purchased: " + finalEquipment.getDisplayName());
+            }
 
-                userRepository.saveUser(user, new UserRepository.OnUserSaveListener() {
-                    @Override
-                    public void onSuccess() {
-                        Log.d(TAG, "Purchase successful: " + finalEquipment.getDisplayName());
-                        listener.onSuccess("Purchased: " + finalEquipment.getDisplayName());
-                    }
+            @Override
+            public void onError(String message) {
+                listener.onError("Purchase failed: " + message);
+            }
+        });
+    }
 
-                    @Override
-                    public void onError(Exception e) {
-                        listener.onError("Error saving user: " + e.getMessage());
-                    }
-                });
+    // Vraća novčiće ako posle naplate upis nadogradnje nije uspeo
+    private void refundCoins(User user, int amount) {
+        userLedger.addCoins(user.getUserId(), amount, new UserLedger.OnLedgerListener() {
+            @Override
+            public void onSuccess() {
+                user.setCoins(user.getCoins() + amount);
+                Log.d(TAG, "Refunded " + amount + " coins");
             }
 
             @Override
-            public void onError(String message) {
-                listener.onError("Error adding equipment: " + message);
+            public void onError(Exception e) {
+                Log.e(TAG, "❌ Error refunding coins: " + e.getMessage());
             }
         });
     }
 
     public void activateEquipment(Equipment equipment, OnPurchaseListener listener) {
-        equipment.setIsActive(true);
-
-        equipmentRepository.updateEquipment(equipment, new EquipmentRepository.OnEquipmentListener() {
+        equipmentRepository.setEquipmentActive(equipment.getEquipmentId(), true,
+                new EquipmentRepository.OnEquipmentListener() {
             @Override
             public void onSuccess() {
+                equipment.setIsActive(true);
                 Log.d(TAG, "Equipment activated: " + equipment.getDisplayName());
                 listener.onSuccess("Activated: " + equipment.getDisplayName());
             }
@@ -104,11 +109,11 @@ public class EquipmentManager {
 
 
     public void deactivateEquipment(Equipment equipment, OnPurchaseListener listener) {
-        equipment.setIsActive(false);
-
-        equipmentRepository.updateEquipment(equipment, new EquipmentRepository.OnEquipmentListener() {
+        equipmentRepository.setEquipmentActive(equipment.getEquipmentId(), false,
+                new EquipmentRepository.OnEquipmentListener() {
             @Override
             public void onSuccess() {
+                equipment.setIsActive(false);
                 Log.d(TAG, "Equipment deactivated: " + equipment.getDisplayName());
                 listener.onSuccess("Deactivated: " + equipment.getDisplayName());
             }
@@ -120,127 +125,55 @@ public class EquipmentManager {
         });
     }
 
-    // Decrease duration after boss fight
+    // Decrease duration after boss fight - sve promene idu u jedan batch
     public void processFightEnd(String userId, EquipmentRepository.OnEquipmentListener listener) {
-        Log.d(TAG, "🔵 =======================================");
-        Log.d(TAG, "🔵 PROCESS FIGHT END CALLED");
-        Log.d(TAG, "🔵 User ID: " + userId);
-        Log.d(TAG, "🔵 =======================================");
+        Log.d(TAG, "🔵 PROCESS FIGHT END CALLED for user " + userId);
 
         equipmentRepository.getActiveEquipment(userId, new EquipmentRepository.OnEquipmentListListener() {
             @Override
             public void onSuccess(List<Equipment> equipmentList) {
-                if (equipmentList.isEmpty()) {
-                    Log.d(TAG, "No active equipment to process");
-                    listener.onSuccess();
-                    return;
-                }
-
-                final int[] processedCount = {0};
-                final int totalEquipment = equipmentList.size();
+                List<Equipment> updated = new ArrayList<>();
+                List<Equipment> stacksUsed = new ArrayList<>();
+                List<String> deletedIds = new ArrayList<>();
 
                 for (Equipment equipment : equipmentList) {
-                    // CHECK IF THERE IS DURATION (temp potions and armor have them, weapons don't)
-                    if (equipment.getRemainingDuration() > 0) {
-                        // Decrease duration by 1
-                        equipment.setRemainingDuration(equipment.getRemainingDuration() - 1);
-
-                        Log.d(TAG, equipment.getDisplayName() + " duration: " +
-                                (equipment.getRemainingDuration() + 1) + " -> " + equipment.getRemainingDuration());
-
-                        // IF DURATION IS NOW 0, DEACTIVATE EQUIPMENT
-                        if (equipment.getRemainingDuration() == 0) {
-                            equipment.setIsActive(false);
-                            Log.d(TAG, "❌ " + equipment.getDisplayName() + " EXPIRED and deactivated!");
-
-                            // -------------------------------
-                            // AKO JE TEMP POTION, OBRIŠI GA POTPUNO
-                            if (equipment.getType() == Equipment.EquipmentType.POTION) {
-                                Equipment.PotionType potion = Equipment.PotionType.valueOf(equipment.getSubType());
-                                if (potion.isTemporary) {
-                                    Log.d(TAG, "🗑️ Deleting temporary potion: " + equipment.getDisplayName());
-                                    equipmentRepository.deleteEquipment(equipment.getEquipmentId(),
-                                            new EquipmentRepository.OnEquipmentListener() {
-                                                @Override
-                                                public void onSuccess() {
-                                                    Log.d(TAG, "✅ Temp potion deleted successfully");
-                                                    processedCount[0]++;
-                                                    if (processedCount[0] == totalEquipment) {
-                                                        listener.onSuccess();
-                                                    }
-                                                }
-
-                                                @Override
-                                                public void onError(String message) {
-                                                    Log.e(TAG, "❌ Error deleting temp potion: " + message);
-                                                    processedCount[0]++;
-                                                    if (processedCount[0] == totalEquipment) {
-                                                        listener.onSuccess();
-                                                    }
-                                                }
-                                            });
-                                    continue; // Skip the update, we have already deleted
-                                }
-                            }
-// 🟢 DODATO - OBRIŠI ARMOR NAKON ŠTO DURATION DOSTIGNE 0
-                            else if (equipment.getType() == Equipment.EquipmentType.ARMOR) {
-                                Log.d(TAG, "🗑️ Deleting expired armor: " + equipment.getDisplayName());
-                                equipmentRepository.deleteEquipment(equipment.getEquipmentId(),
-                                        new EquipmentRepository.OnEquipmentListener() {
-                                            @Override
-                                            public void onSuccess() {
-                                                Log.d(TAG, "✅ Armor deleted successfully");
-                                                processedCount[0]++;
-                                                if (processedCount[0] == totalEquipment) {
-                                                    listener.onSuccess();
-                                                }
-                                            }
-
-                                            @Override
-                                            public void onError(String message) {
-                                                Log.e(TAG, "❌ Error deleting armor: " + message);
-                                                processedCount[0]++;
-                                                if (processedCount[0] == totalEquipment) {
-                                                    listener.onSuccess();
-                                                }
-                                            }
-                                        });
-                                continue; // Skip the update, we have already deleted
-                            }
-                            //----------------------------------------------
-                        }
+                    // Permanent equipment (weapons, perm potions) - bez duration-a
+                    if (equipment.getRemainingDuration() <= 0) {
+                        Log.d(TAG, equipment.getDisplayName() + " is permanent, no duration to decrease");
+                        continue;
+                    }
 
-                        // Update equipment in Firestore
-                        equipmentRepository.updateEquipment(equipment,
-                                new EquipmentRepository.OnEquipmentListener() {
-                                    @Override
-                                    public void onSuccess() {
-                                        Log.d(TAG, "✅ Duration updated for " + equipment.getDisplayName());
-                                        processedCount[0]++;
-                                        if (processedCount[0] == totalEquipment) {
-                                            listener.onSuccess();
-                                        }
-                                    }
-
-                                    @Override
-                                    public void onError(String message) {
-                                        Log.e(TAG, "❌ Error updating duration: " + message);
-                                        processedCount[0]++;
-                                        if (processedCount[0] == totalEquipment) {
-                                            listener.onSuccess();
-                                        }
-                                    }
-                                });
+                    equipment.setRemainingDuration(equipment.getRemainingDuration() - 1);
+                    Log.d(TAG, equipment.getDisplayName() + " duration: " +
+                            (equipment.getRemainingDuration() + 1) + " -> " + equipment.getRemainingDuration());
 
-                    } else {
-                        // Permanent equipment (weapons, perm potions) - bez duration-a
-                        Log.d(TAG, equipment.getDisplayName() + " is permanent, no duration to decrease");
-                        processedCount[0]++;
-                        if (processedCount[0] == totalEquipment) {
-                            listener.onSuccess();
+                    if (equipment.getRemainingDuration() > 0) {
+                        updated.add(equipment);
+                        continue;
+                    }
+
+                    // IF DURATION IS NOW 0, DEACTIVATE EQUIPMENT
+                    equipment.setIsActive(false);
+                    Log.d(TAG, "❌ " + equipment.getDisplayName() + " EXPIRED and deactivated!");
+
+                    if (equipment.getType() == Equipment.EquipmentType.POTION) {
+                        Equipment.PotionType potion = Equipment.PotionType.valueOf(equipment.getSubType());
+                        if (potion.isTemporary) {
+                            // Iz gomile se troši jedan napitak, ostali ostaju neaktivni; da li je
+                            // bio poslednji odlučuje količina pročitana u transakciji
+                            equipment.setRemainingDuration(potion.duration);
+                            stacksUsed.add(equipment);
+                        } else {
+                            updated.add(equipment);
                         }
+                    } else if (equipment.getType() == Equipment.EquipmentType.ARMOR) {
+                        deletedIds.add(equipment.getEquipmentId());
+                    } else {
+                        updated.add(equipment);
                     }
                 }
+
+                equipmentRepository.applyFightEnd(updated, stacksUsed, deletedIds, listener);
             }
 
             @Override
@@ -266,16 +199,16 @@ public class EquipmentManager {
             return;
         }
 
-        // Increase upgrade level and current value
-        weapon.setUpgradeLevel(weapon.getUpgradeLevel() + 1);
-        weapon.setCurrentValue(weapon.getCurrentValue() + 0.01); // +0.01% per upgrade
-
-        equipmentRepository.updateEquipment(weapon, new EquipmentRepository.OnEquipmentListener() {
+        userLedger.spendCoins(user.getUserId(), upgradeCost, new UserLedger.OnLedgerListener() {
             @Override
             public void onSuccess() {
                 user.setCoins(user.getCoins() - upgradeCost);
 
-                userRepository.saveUser(user, new UserRepository.OnUserSaveListener() {
+                // Increase upgrade level and current value
+                weapon.setUpgradeLevel(weapon.getUpgradeLevel() + 1);
+                weapon.setCurrentValue(weapon.getCurrentValue() + 0.01); // +0.01% per upgrade
+
+                equipmentRepository.updateEquipment(weapon, new EquipmentRepository.OnEquipmentListener() {
                     @Override
                     public void onSuccess() {
                         Log.d(TAG, "Weapon upgraded: " + weapon.getDisplayName());
@@ -283,16 +216,19 @@ public class EquipmentManager {
                     }
 
                     @Override
-                    public void onError(Exception e) {
-                        listener.onError("Error saving user: " + e.getMessage());
+                    public void onError(String message) {
+                        weapon.setUpgradeLevel(weapon.getUpgradeLevel() - 1);
+                        weapon.setCurrentValue(weapon.getCurrentValue() - 0.01);
+                        refundCoins(user, upgradeCost);
+                        listener.onError("Error upgrading weapon: " + message);
                     }
                 });
             }
 
             @Override
-            public void onError(String message) {
-                listener.onError("Error upgrading weapon: " + message);
+            public void onError(Exception e) {
+                listener.onError("Upgrade failed: " + e.getMessage());
             }
         });
     }
-}
\ No newline at end of file
+}
@@ -3,21 +3,9 @@ package com.example.bossapp.business;
 import android.util.Log;
 import com.example.bossapp.data.model.Task;
 import com.example.bossapp.data.model.User;
-import com.example.bossapp.data.repository.UserRepository;
 
 public class LevelManager {
     private static final String TAG = "LevelManager";
-    private final UserRepository userRepository;
-
-    public LevelManager() {
-        this.userRepository = new UserRepository();
-    }
-
-    public interface OnLevelUpListener {
-        void onLevelUp(int newLevel, String newTitle, int ppGained, int coinsGained);
-        void onNoLevelUp();
-        void onError(String message);
-    }
 
     /**
      * Izračunava koliko XP je potrebno za prelazak SA trenutnog nivoa NA sledeći nivo
@@ -26,24 +14,10 @@ public class LevelManager {
      * Za nivo 1 -> 2: 500 XP (200 * 2.5 = 500)
      * Za nivo 2 -> 3: 1250 XP (500 * 2.5 = 1250)
      *
-     * Formula: previousRequired * 2.5, zaokruženo na prvu narednu stotinu
+     * Formula: previousRequired * 2.5, odsečeno na ceo broj (vrednosti dolaze iz LevelTable)
      */
     public static int calculateXPForLevel(int targetLevel) {
-        if (targetLevel == 0) return 0; // Za level 0 ne treba XP
-        if (targetLevel == 1) return 200; // Za prelazak na level 1 treba 200 XP
-
-        // Za sve ostale nivoe
-        int previousXP = 200; // XP potreban za level 1
-
-        for (int i = 2; i <= targetLevel; i++) {
-            // Formula: XP * 2 + XP / 2 = XP * 2.5
-            double calculated = previousXP * 2.5;
-            previousXP = (int) calculated;
-            // Zaokruži na prvu narednu stotinu
-            //previousXP = (int) (Math.ceil(calculated / 100.0) * 100);
-        }
-
-        return previousXP;
+        return toInt(LevelTable.get().xpForLevel(targetLevel));
     }
 
     /**
@@ -56,18 +30,7 @@ public class LevelManager {
      * Formula: previousPP + (3/4 * previousPP) = previousPP * 1.75
      */
     public static int calculatePPForLevel(int level) {
-        if (level == 0) return 0; // Level 0 nema PP
-        if (level == 1) return 40; // Početni PP za level 1
-
-        int previousPP = 40;
-
-        for (int i = 2; i <= level; i++) {
-            // Formula: PP + (3/4 * PP) = PP * 1.75
-            double calculated = previousPP + (3.0 / 4.0 * previousPP);
-            previousPP = (int) Math.round(calculated);
-        }
-
-        return previousPP;
+        return toInt(LevelTable.get().ppForLevel(level));
     }
 
     /**
@@ -75,22 +38,7 @@ public class LevelManager {
      * Formula: XP težine za prethodni nivo + XP težine za prethodni nivo / 2
      */
     public static int calculateDifficultyXP(Task.Difficulty difficulty, int level) {
-        int baseXP;
-        switch (difficulty) {
-            case VERY_EASY: baseXP = 1; break;
-            case EASY: baseXP = 3; break;
-            case HARD: baseXP = 7; break;
-            case EXTREME: baseXP = 20; break;
-            default: baseXP = 1;
-        }
-
-        if (level == 0) return baseXP;
-
-        int currentXP = baseXP;
-        for (int i = 1; i <= level; i++) {
-            currentXP = (int) Math.round(currentXP * 1.5);
-        }
-        return currentXP;
+        return toInt(LevelTable.get().difficultyXP(difficulty, level));
     }
 
     /**
@@ -98,101 +46,51 @@ public class LevelManager {
      * Formula: XP bitnosti za prethodni nivo + XP bitnosti za prethodni nivo / 2
      */
     public static int calculateImportanceXP(Task.Importance importance, int level) {
-        int baseXP;
-        switch (importance) {
-            case NORMAL: baseXP = 1; break;
-            case IMPORTANT: baseXP = 3; break;
-            case VERY_IMPORTANT: baseXP = 10; break;
-            case SPECIAL: baseXP = 100; break;
-            default: baseXP = 1;
-        }
+        return toInt(LevelTable.get().importanceXP(importance, level));
+    }
 
-        if (level == 0) return baseXP;
+    public static class LevelUpResult {
+        public final int levelsGained;
+        public final int ppGained;
 
-        int currentXP = baseXP;
-        for (int i = 1; i <= level; i++) {
-            currentXP = (int) Math.round(currentXP * 1.5);
+        LevelUpResult(int levelsGained, int ppGained) {
+            this.levelsGained = levelsGained;
+            this.ppGained = ppGained;
         }
-        return currentXP;
+    }
+
+    private static int toInt(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
     }
 
     /**
-     * Proverava da li korisnik treba da pređe na viši nivo
-     * Ako jeste, automatski ga level-up-uje
-     *
-     * VAŽNO: Ova metoda može da level-up-uje korisnika VIŠE PUTA ako ima dovoljno XP!
+     * Primenjuje sve level up-ove za koje korisnik ima dovoljno XP, samo u memoriji.
+     * Ne čuva korisnika - pozivalac odlučuje kako se promena upisuje u bazu.
      */
-    public void checkAndProcessLevelUp(User user, OnLevelUpListener listener) {
-        Log.d(TAG, "=== CHECKING LEVEL UP ===");
-        Log.d(TAG, "Current Level: " + user.getLevel());
-        Log.d(TAG, "Current XP: " + user.getXp());
-        Log.d(TAG, "Current PP: " + user.getPp());
-
-        // Proveravaj dok korisnik ima dovoljno XP za sledeći nivo
-        int totalLevelsGained = 0;
-        int totalPPGained = 0;
-
-        while (true) {
-            int currentLevel = user.getLevel();
-            int requiredXP = calculateXPForLevel(currentLevel + 1);
-
-            Log.d(TAG, "Required XP for level " + (currentLevel + 1) + ": " + requiredXP);
-
-            if (user.getXp() >= requiredXP) {
-                // Level up!
-                int newLevel = currentLevel + 1;
-                int ppGained = calculatePPForLevel(newLevel);
-
-                Log.d(TAG, "🎉 LEVEL UP! " + currentLevel + " -> " + newLevel);
-                Log.d(TAG, "PP gained: " + ppGained);
-
-                // Ažuriraj korisnika
-                user.setLevel(newLevel);
-                user.setXp(user.getXp() - requiredXP); // Oduzmi potrošeni XP
-                user.setPp(user.getPp() + ppGained); // Dodaj PP
-                user.setTitle(User.getTitleForLevel(newLevel));
-
-                totalLevelsGained++;
-                totalPPGained += ppGained;
-
-                Log.d(TAG, "New Level: " + newLevel);
-                Log.d(TAG, "Remaining XP: " + user.getXp());
-                Log.d(TAG, "New PP: " + user.getPp());
-                Log.d(TAG, "New Title: " + user.getTitle());
-            } else {
-                // Nema dovoljno XP za sledeći nivo
-                break;
-            }
+    public static LevelUpResult applyLevelUps(User user) {
+        LevelTable table = LevelTable.get();
+        int currentLevel = user.getLevel();
+        long totalXP = table.cumulativeXP(currentLevel) + Math.max(0, user.getXp());
+        int newLevel = Math.max(currentLevel, table.levelForTotalXP(totalXP));
+
+        if (newLevel == currentLevel) {
+            Log.d(TAG, "Required XP for level " + (currentLevel + 1) + ": " + table.xpForLevel(currentLevel + 1));
+            return new LevelUpResult(0, 0);
         }
 
-        // *** ISPRAVKA: Kreiraj final kopije za inner class ***
-        final int finalLevelsGained = totalLevelsGained;
-        final int finalPPGained = totalPPGained;
-        final int finalNewLevel = user.getLevel();
-        final String finalNewTitle = user.getTitle();
-
-        if (finalLevelsGained > 0) {
-            // Sačuvaj korisnika u bazu
-            Log.d(TAG, "Saving user with " + finalLevelsGained + " level(s) gained...");
-
-            userRepository.saveUser(user, new UserRepository.OnUserSaveListener() {
-                @Override
-                public void onSuccess() {
-                    Log.d(TAG, "✅ User saved successfully after level up!");
-                    listener.onLevelUp(finalNewLevel, finalNewTitle, finalPPGained, 0);
-                }
-
-                @Override
-                public void onError(Exception e) {
-                    Log.e(TAG, "❌ Error saving user after level up: " + e.getMessage());
-                    listener.onError("Greška pri čuvanju level up-a: " + e.getMessage());
-                }
-            });
-        } else {
-            Log.d(TAG, "No level up - not enough XP");
-            listener.onNoLevelUp();
-        }
+        int ppGained = toInt(table.cumulativePP(newLevel) - table.cumulativePP(currentLevel));
+
+        Log.d(TAG, "🎉 LEVEL UP! " + currentLevel + " -> " + newLevel);
+        Log.d(TAG, "PP gained: " + ppGained);
+
+        user.setLevel(newLevel);
+        user.setXp(toInt(totalXP - table.cumulativeXP(newLevel))); // Oduzmi potrošeni XP
+        user.setPp(toInt((long) user.getPp() + ppGained)); // Dodaj PP
+        user.setTitle(User.getTitleForLevel(newLevel));
+
+        return new LevelUpResult(newLevel - currentLevel, ppGained);
     }
+
     /**
      * Vraća procenat napretka ka sledećem nivou
      */
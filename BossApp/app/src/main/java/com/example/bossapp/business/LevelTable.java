@@ -0,0 +1,157 @@
+package com.example.bossapp.business;
+
+import com.example.bossapp.data.model.Task;
+
+/**
+ * Unapred izračunate tabele za XP pragove, PP nagrade i XP zadataka po nivou.
+ *
+ * Tabela se pravi jednom, pri prvom korišćenju, i posle toga je nepromenljiva.
+ * Sve vrednosti su long i zasićuju se na Long.MAX_VALUE umesto da pređu opseg,
+ * pa su svi upiti O(1), a "nivo za ukupan XP" je binarna pretraga.
+ */
+public final class LevelTable {
+
+    private final int maxLevel;
+    private final long[] xpForLevel;       // XP potreban za prelazak sa (L-1) na L
+    private final long[] cumulativeXP;     // ukupan XP od nivoa 0 do nivoa L
+    private final long[] ppForLevel;       // PP koji se dobija dostizanjem nivoa L
+    private final long[] cumulativePP;     // ukupan PP od nivoa 0 do nivoa L
+    private final long[][] difficultyXP;   // [Difficulty.ordinal][L]
+    private final long[][] importanceXP;   // [Importance.ordinal][L]
+
+    private static class Holder {
+        static final LevelTable INSTANCE = new LevelTable();
+    }
+
+    public static LevelTable get() {
+        return Holder.INSTANCE;
+    }
+
+    private LevelTable() {
+        // Nivo do kog ukupan XP ne prelazi opseg long-a
+        int levels = 1;
+        long xp = 200;
+        long total = 200;
+        while (xp <= Long.MAX_VALUE / 5 && total <= Long.MAX_VALUE - xp * 5 / 2) {
+            xp = xp * 5 / 2;
+            total += xp;
+            levels++;
+        }
+        maxLevel = levels;
+
+        xpForLevel = new long[maxLevel + 1];
+        cumulativeXP = new long[maxLevel + 1];
+        ppForLevel = new long[maxLevel + 1];
+        cumulativePP = new long[maxLevel + 1];
+
+        for (int level = 1; level <= maxLevel; level++) {
+            // Formula: XP * 2.5, odsečeno na ceo broj
+            xpForLevel[level] = level == 1 ? 200 : xpForLevel[level - 1] * 5 / 2;
+            cumulativeXP[level] = cumulativeXP[level - 1] + xpForLevel[level];
+
+            // Formula: PP + 3/4 * PP, zaokruženo
+            ppForLevel[level] = level == 1 ? 40 : saturatingRound(ppForLevel[level - 1], 7, 4);
+            cumulativePP[level] = saturatingAdd(cumulativePP[level - 1], ppForLevel[level]);
+        }
+
+        Task.Difficulty[] difficulties = Task.Difficulty.values();
+        difficultyXP = new long[difficulties.length][];
+        for (Task.Difficulty difficulty : difficulties) {
+            difficultyXP[difficulty.ordinal()] = growthRow(difficulty.getXp());
+        }
+
+        Task.Importance[] importances = Task.Importance.values();
+        importanceXP = new long[importances.length][];
+        for (Task.Importance importance : importances) {
+            importanceXP[importance.ordinal()] = growthRow(importance.getXp());
+        }
+    }
+
+    /**
+     * XP zadatka po nivou: vrednost prethodnog nivoa + polovina, zaokruženo.
+     */
+    private long[] growthRow(int baseXP) {
+        long[] row = new long[maxLevel + 1];
+        row[0] = baseXP;
+        for (int level = 1; level <= maxLevel; level++) {
+            row[level] = saturatingRound(row[level - 1], 3, 2);
+        }
+        return row;
+    }
+
+    /**
+     * round(value * numerator / denominator) za pozitivne vrednosti, sa zasićenjem.
+     */
+    private static long saturatingRound(long value, int numerator, int denominator) {
+        if (value > (Long.MAX_VALUE - denominator) / numerator) return Long.MAX_VALUE;
+        return (value * numerator + denominator / 2) / denominator;
+    }
+
+    private static long saturatingAdd(long a, long b) {
+        return a > Long.MAX_VALUE - b ? Long.MAX_VALUE : a + b;
+    }
+
+    private int clampLevel(int level) {
+        if (level < 0) return 0;
+        return Math.min(level, maxLevel);
+    }
+
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * XP potreban za prelazak NA targetLevel sa prethodnog nivoa.
+     * Za nivoe iznad tabele vraća Long.MAX_VALUE (nedostižno).
+     */
+    public long xpForLevel(int targetLevel) {
+        if (targetLevel <= 0) return 0;
+        if (targetLevel > maxLevel) return Long.MAX_VALUE;
+        return xpForLevel[targetLevel];
+    }
+
+    /**
+     * Ukupan XP potreban da se od nivoa 0 stigne do nivoa level.
+     */
+    public long cumulativeXP(int level) {
+        if (level <= 0) return 0;
+        if (level > maxLevel) return Long.MAX_VALUE;
+        return cumulativeXP[level];
+    }
+
+    public long ppForLevel(int level) {
+        return level <= 0 ? 0 : ppForLevel[clampLevel(level)];
+    }
+
+    /**
+     * Ukupan PP dobijen od nivoa 0 do nivoa level.
+     */
+    public long cumulativePP(int level) {
+        return level <= 0 ? 0 : cumulativePP[clampLevel(level)];
+    }
+
+    public long difficultyXP(Task.Difficulty difficulty, int level) {
+        return difficultyXP[difficulty.ordinal()][clampLevel(level)];
+    }
+
+    public long importanceXP(Task.Importance importance, int level) {
+        return importanceXP[importance.ordinal()][clampLevel(level)];
+    }
+
+    /**
+     * Najviši nivo čiji je ukupan XP prag manji ili jednak totalXP (binarna pretraga).
+     */
+    public int levelForTotalXP(long totalXP) {
+        int low = 0;
+        int high = maxLevel;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (cumulativeXP[mid] <= totalXP) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
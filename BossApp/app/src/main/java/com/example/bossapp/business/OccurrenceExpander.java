@@ -0,0 +1,169 @@
+package com.example.bossapp.business;
+
+import com.example.bossapp.data.model.Task;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Razvija ponavljajući zadatak u pojedinačna ponavljanja za zadati prozor [from, to).
+ *
+ * Ponavljanja se računaju kao startDay + k * korak, pa se do prvog ponavljanja
+ * u prozoru skače direktno (O(1)), bez iteriranja od startDate. Iterator je lenj i
+ * pravi objekat samo za ponavljanja koja zaista vraća.
+ *
+ * Jednokratan zadatak se tretira kao serija sa jednim ponavljanjem na executionTime.
+ */
+public class OccurrenceExpander {
+
+    private final long startDay;
+    private final long endDay;      // uključivo
+    private final int stepDays;
+    private final long millisOfDay;
+    private final Task.TaskStatus defaultStatus;
+    private final int defaultXp;
+    private final Map<Long, OccurrenceOverride> overrides = new HashMap<>();
+
+    public static class OccurrenceOverride {
+        public final Task.TaskStatus status;
+        public final Integer xp;
+
+        public OccurrenceOverride(Task.TaskStatus status, Integer xp) {
+            this.status = status;
+            this.xp = xp;
+        }
+    }
+
+    public static class Occurrence {
+        private final int index;
+        private final long epochDay;
+        private final long startMillis;
+        private final Task.TaskStatus status;
+        private final int xp;
+
+        Occurrence(int index, long epochDay, long startMillis, Task.TaskStatus status, int xp) {
+            this.index = index;
+            this.epochDay = epochDay;
+            this.startMillis = startMillis;
+            this.status = status;
+            this.xp = xp;
+        }
+
+        public int getIndex() { return index; }
+        public long getEpochDay() { return epochDay; }
+        public long getStartMillis() { return startMillis; }
+        public Date getStartDate() { return new Date(startMillis); }
+        public Task.TaskStatus getStatus() { return status; }
+        public int getXp() { return xp; }
+    }
+
+    public OccurrenceExpander(long startMillis, long endMillis, int interval, Task.RepeatUnit unit,
+                              Task.TaskStatus defaultStatus, int defaultXp) {
+        if (interval <= 0) throw new IllegalArgumentException("Invalid repeat interval");
+
+        this.startDay = EpochDays.toEpochDay(startMillis);
+        this.endDay = EpochDays.toEpochDay(endMillis);
+        this.stepDays = unit == Task.RepeatUnit.WEEK ? interval * 7 : interval;
+        this.millisOfDay = EpochDays.millisOfDay(startMillis);
+        this.defaultStatus = defaultStatus;
+        this.defaultXp = defaultXp;
+    }
+
+    /**
+     * Pravi expander za zadatak. Vraća null ako zadatak nema potrebne datume.
+     */
+    public static OccurrenceExpander forTask(Task task) {
+        if (task.isRepeating()) {
+            if (task.getStartDate() == null || task.getEndDate() == null ||
+                    task.getRepeatUnit() == null || task.getRepeatInterval() <= 0) {
+                return null;
+            }
+            return new OccurrenceExpander(
+                    task.getStartDate().toDate().getTime(),
+                    task.getEndDate().toDate().getTime(),
+                    task.getRepeatInterval(),
+                    task.getRepeatUnit(),
+                    task.getStatus(),
+                    task.getTotalXP());
+        }
+
+        if (task.getExecutionTime() == null) return null;
+        long time = task.getExecutionTime().toDate().getTime();
+        return new OccurrenceExpander(time, time, 1, Task.RepeatUnit.DAY, task.getStatus(), task.getTotalXP());
+    }
+
+    /**
+     * Postavlja status i/ili XP za ponavljanje na datom danu. Null vrednost zadržava podrazumevanu.
+     */
+    public OccurrenceExpander override(long epochDay, Task.TaskStatus status, Integer xp) {
+        overrides.put(epochDay, new OccurrenceOverride(status, xp));
+        return this;
+    }
+
+    public boolean occursOn(long epochDay) {
+        return epochDay >= startDay && epochDay <= endDay && (epochDay - startDay) % stepDays == 0;
+    }
+
+    /**
+     * Broj ponavljanja u prozoru [fromDay, toDay), bez iteriranja.
+     */
+    public int count(long fromDay, long toDay) {
+        long first = firstIndex(fromDay);
+        long last = lastIndex(toDay);
+        return last < first ? 0 : (int) (last - first + 1);
+    }
+
+    public Iterator<Occurrence> iterator(long fromDay, long toDay) {
+        final long first = firstIndex(fromDay);
+        final long last = lastIndex(toDay);
+
+        return new Iterator<Occurrence>() {
+            private long next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next <= last;
+            }
+
+            @Override
+            public Occurrence next() {
+                if (next > last) throw new NoSuchElementException();
+                int index = (int) next++;
+                return occurrenceAt(index);
+            }
+        };
+    }
+
+    public Iterable<Occurrence> between(long fromDay, long toDay) {
+        return () -> iterator(fromDay, toDay);
+    }
+
+    private Occurrence occurrenceAt(int index) {
+        long day = startDay + (long) index * stepDays;
+        Task.TaskStatus status = defaultStatus;
+        int xp = defaultXp;
+
+        if (!overrides.isEmpty()) {
+            OccurrenceOverride override = overrides.get(day);
+            if (override != null) {
+                if (override.status != null) status = override.status;
+                if (override.xp != null) xp = override.xp;
+            }
+        }
+        return new Occurrence(index, day, EpochDays.toMillis(day, millisOfDay), status, xp);
+    }
+
+    private long firstIndex(long fromDay) {
+        if (fromDay <= startDay) return 0;
+        return Math.floorDiv(fromDay - startDay + stepDays - 1, stepDays);
+    }
+
+    private long lastIndex(long toDay) {
+        long lastDay = Math.min(toDay - 1, endDay);
+        if (lastDay < startDay) return -1;
+        return Math.floorDiv(lastDay - startDay, stepDays);
+    }
+}
@@ -1,16 +1,103 @@
 package com.example.bossapp.business;
 
+import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class QRCodeManager {
 
+    private static final String TAG = "QRCodeManager";
     private static final int QR_CODE_SIZE = 512; // Size in pixels
+    private static final String QR_PREFIX = "BOSSAPP:USER:";
+
+    private static final String CACHE_DIR = "qr_codes";
+    private static final int MEMORY_CACHE_BYTES = 2 * 1024 * 1024;
+
+    // Jedan pozadinski thread za sve QR kodove umesto novog Thread-a pri svakom otvaranju profila
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static final LruCache<String, Bitmap> memoryCache = new LruCache<String, Bitmap>(MEMORY_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+
+    public interface OnQRCodeLoadListener {
+        void onSuccess(Bitmap bitmap);
+        void onError(String error);
+    }
+
+    /**
+     * Vraća QR kod korisnika redom iz memorije, sa diska (cacheDir) ili ga generiše.
+     * Pogodak u memoriji se vraća odmah, ostalo se radi na pozadinskom thread-u,
+     * a listener se uvek poziva na main thread-u.
+     */
+    public static void loadQRCode(Context context, String userId, OnQRCodeLoadListener listener) {
+        if (userId == null || userId.isEmpty()) {
+            listener.onError("Invalid user id");
+            return;
+        }
+
+        Bitmap cached = memoryCache.get(userId);
+        if (cached != null) {
+            listener.onSuccess(cached);
+            return;
+        }
+
+        File file = new File(new File(context.getApplicationContext().getCacheDir(), CACHE_DIR),
+                "user_" + userId + "_" + QR_CODE_SIZE + ".png");
+
+        executor.execute(() -> {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (bitmap == null) {
+                bitmap = generateQRCode(userId);
+                if (bitmap != null) {
+                    writeToDisk(file, bitmap);
+                }
+            }
+
+            Bitmap result = bitmap;
+            if (result != null) {
+                memoryCache.put(userId, result);
+            }
+            mainHandler.post(() -> {
+                if (result != null) {
+                    listener.onSuccess(result);
+                } else {
+                    listener.onError("Error generating QR code");
+                }
+            });
+        });
+    }
+
+    private static void writeToDisk(File file, Bitmap bitmap) {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) return;
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving QR code", e);
+        }
+    }
 
     /**
      * Generates a QR code bitmap from user ID
@@ -25,7 +112,7 @@ public class QRCodeManager {
         try {
             // Create QR code content - we'll use a custom format
             // Format: "BOSSAPP:USER:{userId}"
-            String qrContent = "BOSSAPP:USER:" + userId;
+            String qrContent = QR_PREFIX + userId;
 
             QRCodeWriter writer = new QRCodeWriter();
             BitMatrix bitMatrix = writer.encode(
@@ -35,17 +122,20 @@ public class QRCodeManager {
                     QR_CODE_SIZE
             );
 
-            // Convert BitMatrix to Bitmap
+            // Convert BitMatrix to Bitmap - svi pikseli u niz pa jedan setPixels poziv
             int width = bitMatrix.getWidth();
             int height = bitMatrix.getHeight();
-            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            int[] pixels = new int[width * height];
 
-            for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    bitmap.setPixel(x, y, bitMatrix.get(x, y) ? Color.BLACK : Color.WHITE);
+            for (int y = 0; y < height; y++) {
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    pixels[offset + x] = bitMatrix.get(x, y) ? Color.BLACK : Color.WHITE;
                 }
             }
 
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
             return bitmap;
 
         } catch (WriterException e) {
@@ -60,11 +150,11 @@ public class QRCodeManager {
      * @return User ID if valid format, null otherwise
      */
     public static String extractUserIdFromQR(String qrContent) {
-        if (qrContent == null || !qrContent.startsWith("BOSSAPP:USER:")) {
+        if (!isValidUserQR(qrContent)) {
             return null;
         }
 
-        return qrContent.replace("BOSSAPP:USER:", "");
+        return qrContent.substring(QR_PREFIX.length());
     }
 
     /**
@@ -73,8 +163,9 @@ public class QRCodeManager {
      * @return true if valid BossApp user QR code
      */
     public static boolean isValidUserQR(String qrContent) {
+        // Firebase UID je alfanumerički, pa se ostalo odbija pre bilo kakvog upita u Firestore
         return qrContent != null &&
-                qrContent.startsWith("BOSSAPP:USER:") &&
-                qrContent.length() > "BOSSAPP:USER:".length();
+                qrContent.startsWith(QR_PREFIX) &&
+                qrContent.substring(QR_PREFIX.length()).matches("[A-Za-z0-9]{1,128}");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package com.example.bossapp.business;
+
+import com.example.bossapp.data.model.Task;
+import com.example.bossapp.data.model.UserStatsAggregate;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Računa statistiku zadataka u jednom prolazu.
+ *
+ * Dani se čuvaju kao int (broj dana od 1970-01-01), aktivni dani i dani sa
+ * završenim zadacima kao BitSet, pa se nizovi računaju preko nextSetBit/nextClearBit
+ * bez formatiranja i parsiranja datuma.
+ */
+public class StatisticsEngine {
+    public static final int NO_DAY = Integer.MIN_VALUE;
+
+    // Pomeraj da bi i datumi pre 1970. imali nenegativan indeks u BitSet-u (1900-01-01)
+    private static final int DAY_OFFSET = 25567;
+    private static final int XP_DAYS = 7;
+
+    private final int today;
+    private final BitSet taskDays = new BitSet();
+    private final BitSet doneDays = new BitSet();
+    private final int[] xpByDaysAgo = new int[XP_DAYS];
+    private final StatisticsManager.Statistics stats = new StatisticsManager.Statistics();
+    private long doneDifficultySum;
+
+    public StatisticsEngine(int today) {
+        this.today = today;
+    }
+
+    public static StatisticsManager.Statistics compute(List<Task> tasks) {
+        if (tasks.isEmpty()) return new StatisticsManager.Statistics();
+
+        StatisticsEngine engine = new StatisticsEngine((int) EpochDays.toEpochDay(System.currentTimeMillis()));
+        for (Task task : tasks) {
+            int day = task.getExecutionTime() != null
+                    ? (int) EpochDays.toEpochDay(task.getExecutionTime().toDate())
+                    : NO_DAY;
+            engine.add(day, task.getStatus(), task.getDifficulty(), task.getCategoryName(), task.getTotalXP());
+        }
+        return engine.finish();
+    }
+
+    /**
+     * Statistika iz materijalizovanog userStats agregata. Brojevi se preuzimaju direktno,
+     * a dani iz mapa agregata popunjavaju iste BitSet-ove kao add(), pa nizovi i XP
+     * poslednjih 7 dana idu kroz isti finish().
+     */
+    public static StatisticsManager.Statistics fromAggregate(UserStatsAggregate aggregate, int today) {
+        StatisticsEngine engine = new StatisticsEngine(today);
+        StatisticsManager.Statistics stats = engine.stats;
+
+        stats.totalTasks = (int) aggregate.get(UserStatsAggregate.FIELD_TOTAL_TASKS);
+        stats.completedTasks = (int) aggregate.getStatusCount(Task.TaskStatus.DONE);
+        stats.pendingTasks = (int) (aggregate.getStatusCount(Task.TaskStatus.ACTIVE)
+                + aggregate.getStatusCount(Task.TaskStatus.PAUSED));
+        stats.canceledTasks = (int) aggregate.getStatusCount(Task.TaskStatus.CANCELED);
+        stats.notDoneTasks = (int) aggregate.getStatusCount(Task.TaskStatus.NOT_DONE);
+        engine.doneDifficultySum = aggregate.get(UserStatsAggregate.FIELD_DONE_DIFFICULTY_SUM);
+
+        for (Map.Entry<String, Long> entry : aggregate.getMap(UserStatsAggregate.FIELD_CATEGORY_DONE).entrySet()) {
+            if (entry.getValue() > 0) stats.tasksByCategory.put(entry.getKey(), entry.getValue().intValue());
+        }
+
+        for (Map.Entry<String, Long> entry : aggregate.getMap(UserStatsAggregate.FIELD_TASK_DAYS).entrySet()) {
+            int bit = Integer.parseInt(entry.getKey()) + DAY_OFFSET;
+            if (entry.getValue() > 0 && bit >= 0) engine.taskDays.set(bit);
+        }
+        for (Map.Entry<String, Long> entry : aggregate.getMap(UserStatsAggregate.FIELD_DONE_BY_DAY).entrySet()) {
+            int bit = Integer.parseInt(entry.getKey()) + DAY_OFFSET;
+            if (entry.getValue() > 0 && bit >= 0) engine.doneDays.set(bit);
+        }
+        for (Map.Entry<String, Long> entry : aggregate.getMap(UserStatsAggregate.FIELD_XP_BY_DAY).entrySet()) {
+            int daysAgo = today - Integer.parseInt(entry.getKey());
+            if (daysAgo >= 0 && daysAgo < XP_DAYS) engine.xpByDaysAgo[daysAgo] += entry.getValue().intValue();
+        }
+        return engine.finish();
+    }
+
+    /**
+     * Dodaje jedan zadatak. Za zadatke bez datuma izvršenja day je NO_DAY.
+     */
+    public void add(int day, Task.TaskStatus status, Task.Difficulty difficulty, String categoryName, int totalXP) {
+        stats.totalTasks++;
+
+        int bit = day != NO_DAY ? day + DAY_OFFSET : -1;
+        if (bit >= 0) taskDays.set(bit);
+
+        if (status == null) return;
+        switch (status) {
+            case DONE:
+                stats.completedTasks++;
+                if (difficulty != null) doneDifficultySum += difficulty.getXp();
+                if (categoryName != null) stats.tasksByCategory.merge(categoryName, 1, Integer::sum);
+                if (bit >= 0) {
+                    doneDays.set(bit);
+                    int daysAgo = today - day;
+                    if (daysAgo >= 0 && daysAgo < XP_DAYS) xpByDaysAgo[daysAgo] += totalXP;
+                }
+                break;
+            case ACTIVE:
+            case PAUSED:
+                stats.pendingTasks++;
+                break;
+            case CANCELED:
+                stats.canceledTasks++;
+                break;
+            case NOT_DONE:
+                stats.notDoneTasks++;
+                break;
+        }
+    }
+
+    public StatisticsManager.Statistics finish() {
+        stats.activeDays = taskDays.cardinality();
+
+        // Svaki niz uzastopnih postavljenih bitova je jedan niz dana
+        int run = 0;
+        for (int start = doneDays.nextSetBit(0); start >= 0; ) {
+            int end = doneDays.nextClearBit(start);
+            run = end - start;
+            stats.longestStreak = Math.max(stats.longestStreak, run);
+            start = doneDays.nextSetBit(end);
+        }
+        stats.currentStreak = run;
+
+        stats.averageDifficulty = stats.completedTasks > 0
+                ? (double) doneDifficultySum / stats.completedTasks
+                : 0;
+
+        for (int daysAgo = XP_DAYS - 1; daysAgo >= 0; daysAgo--) {
+            int[] ymd = EpochDays.toYearMonthDay(today - daysAgo);
+            stats.last7DaysXP.add(new StatisticsManager.DailyXP(
+                    String.format("%02d/%02d", ymd[1], ymd[2]), xpByDaysAgo[daysAgo]));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.bossapp.business;
+
+import android.util.Log;
+
+import com.example.bossapp.data.model.Task;
+import com.example.bossapp.data.model.UserStatsAggregate;
+import com.example.bossapp.data.repository.TaskRepository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uspešnost korisnika za borbu sa bosom: DONE / (svi osim PAUSED i CANCELED).
+ *
+ * Brojevi se čitaju iz userStats dokumenta, a ako on ne postoji, preko count()
+ * upita. Rezultat se kešira dok TaskManager ne javi promenu statusa.
+ *
+ * invalidate() povećava generaciju korisnika; računanje koje je počelo pre toga
+ * vraća rezultat pozivaocu, ali ga ne upisuje u keš.
+ */
+public class SuccessRateService {
+    private static final String TAG = "SuccessRateService";
+
+    private static final List<String> COUNTED_STATUSES = Arrays.asList(
+            Task.TaskStatus.ACTIVE.name(),
+            Task.TaskStatus.DONE.name(),
+            Task.TaskStatus.NOT_DONE.name());
+
+    private static final Map<String, Integer> cache = new ConcurrentHashMap<>();
+    private static final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private final TaskRepository taskRepository;
+
+    public SuccessRateService() {
+        this.taskRepository = new TaskRepository();
+    }
+
+    public static void invalidate(String userId) {
+        if (userId == null) return;
+        generations.merge(userId, 1L, Long::sum);
+        cache.remove(userId);
+    }
+
+    public static void invalidateAll() {
+        generations.replaceAll((userId, generation) -> generation + 1);
+        cache.clear();
+    }
+
+    // Upisuje generaciju pri prvom računanju, da bi je i invalidateAll() povećao
+    private static long generationOf(String userId) {
+        return generations.computeIfAbsent(userId, id -> 0L);
+    }
+
+    public void getSuccessRate(String userId, TaskManager.OnSuccessRateCalculatedListener listener) {
+        Integer cached = cache.get(userId);
+        if (cached != null) {
+            listener.onCalculated(cached);
+            return;
+        }
+        long generation = generationOf(userId);
+
+        taskRepository.getUserStats(userId, new TaskRepository.OnUserStatsLoadListener() {
+            @Override
+            public void onSuccess(UserStatsAggregate aggregate) {
+                if (!aggregate.isInitialized()) {
+                    countWithAggregation(userId, generation, listener);
+                    return;
+                }
+
+                long successful = aggregate.getStatusCount(Task.TaskStatus.DONE);
+                long total = successful
+                        + aggregate.getStatusCount(Task.TaskStatus.ACTIVE)
+                        + aggregate.getStatusCount(Task.TaskStatus.NOT_DONE);
+                publish(userId, generation, successful, total, listener);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                countWithAggregation(userId, generation, listener);
+            }
+        });
+    }
+
+    private void countWithAggregation(String userId, long generation,
+                                      TaskManager.OnSuccessRateCalculatedListener listener) {
+        taskRepository.countTasksByStatus(userId, COUNTED_STATUSES, new TaskRepository.OnTaskCountListener() {
+            @Override
+            public void onSuccess(long total) {
+                taskRepository.countTasksByStatus(userId,
+                        Collections.singletonList(Task.TaskStatus.DONE.name()),
+                        new TaskRepository.OnTaskCountListener() {
+                            @Override
+                            public void onSuccess(long successful) {
+                                publish(userId, generation, successful, total, listener);
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                Log.e(TAG, "Greška pri računanju uspešnosti: " + e.getMessage());
+                                listener.onCalculated(0);
+                            }
+                        });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Greška pri računanju uspešnosti: " + e.getMessage());
+                listener.onCalculated(0);
+            }
+        });
+    }
+
+    private void publish(String userId, long generation, long successful, long total,
+                         TaskManager.OnSuccessRateCalculatedListener listener) {
+        int rate = total > 0 ? (int) ((successful * 100.0) / total) : 0;
+        Log.d(TAG, "Success rate: " + successful + "/" + total + " = " + rate + "%");
+        if (generationOf(userId) == generation) {
+            cache.put(userId, rate);
+        }
+        listener.onCalculated(rate);
+    }
+}
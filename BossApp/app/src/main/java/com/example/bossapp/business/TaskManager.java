@@ -2,21 +2,22 @@ package com.example.bossapp.business;
 
 import android.util.Log;
 import com.example.bossapp.data.model.Task;
-import com.example.bossapp.data.model.User;
 import com.example.bossapp.data.repository.TaskRepository;
 import com.google.firebase.Timestamp;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.DocumentSnapshot;
 
-import java.util.Calendar;
 import java.util.List;
 
 public class TaskManager {
     private static final String TAG = "TaskManager";
     private final TaskRepository taskRepository;
+    private final XpAwardPipeline xpAwardPipeline;
+    private final SuccessRateService successRateService;
 
     public TaskManager() {
         this.taskRepository = new TaskRepository();
+        this.xpAwardPipeline = new XpAwardPipeline();
+        this.successRateService = new SuccessRateService();
     }
 
     public interface OnTaskOperationListener {
@@ -29,6 +30,11 @@ public class TaskManager {
         void onError(String message);
     }
 
+    public interface OnTasksPageLoadListener {
+        void onSuccess(TaskRepository.TaskPage page);
+        void onError(String message);
+    }
+
     public interface OnTaskLoadListener {
         void onSuccess(Task task);
         void onError(String message);
@@ -58,6 +64,7 @@ public class TaskManager {
             taskRepository.saveTask(task, new TaskRepository.OnTaskSaveListener() {
                 @Override
                 public void onSuccess() {
+                    SuccessRateService.invalidate(task.getOwnerId());
                     listener.onSuccess();
                 }
 
@@ -99,10 +106,26 @@ public class TaskManager {
         });
     }
 
+    public void getUserTasksPage(String userId, TaskRepository.TaskFilter filter, DocumentSnapshot cursor,
+                                 int pageSize, OnTasksPageLoadListener listener) {
+        taskRepository.getTasksPage(userId, filter, cursor, pageSize, new TaskRepository.OnTasksPageLoadListener() {
+            @Override
+            public void onSuccess(TaskRepository.TaskPage page) {
+                listener.onSuccess(page);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                listener.onError(e.getMessage());
+            }
+        });
+    }
+
     public void deleteTask(String taskId, OnTaskOperationListener listener) {
         taskRepository.deleteTask(taskId, new TaskRepository.OnTaskDeleteListener() {
             @Override
             public void onSuccess() {
+                SuccessRateService.invalidateAll();
                 listener.onSuccess();
             }
 
@@ -127,262 +150,42 @@ public class TaskManager {
             return;
         }
 
-        task.setStatus(newStatus);
-        taskRepository.saveTask(task, new TaskRepository.OnTaskSaveListener() {
-            @Override
-            public void onSuccess() {
-                Log.d(TAG, "Task status saved successfully");
-
-                if (newStatus == Task.TaskStatus.DONE) {
-                    Log.d(TAG, "Task je DONE - pozivam awardXPForCompletedTask");
-                    awardXPForCompletedTask(task);
-                } else {
-                    Log.d(TAG, "Task nije DONE - XP se ne dodaje");
+        if (newStatus == Task.TaskStatus.DONE) {
+            Log.d(TAG, "Task je DONE - status i XP se upisuju kroz XpAwardPipeline");
+            xpAwardPipeline.completeTask(task, new XpAwardPipeline.OnXpAwardListener() {
+                @Override
+                public void onSuccess(XpAwardPipeline.AwardResult result) {
+                    SuccessRateService.invalidate(task.getOwnerId());
+                    Log.d(TAG, "Kvota razlog: " + result.quotaReason);
+                    if (result.levelsGained > 0) {
+                        Log.d(TAG, "🎉 LEVEL UP! Novi nivo: " + result.newLevel +
+                                ", titula: " + result.newTitle + ", PP: +" + result.ppGained);
+                    }
+                    listener.onSuccess();
                 }
 
-                listener.onSuccess();
-            }
-
-            @Override
-            public void onError(Exception e) {
-                Log.e(TAG, "Greška pri čuvanju task statusa: " + e.getMessage());
-                listener.onError(e.getMessage());
-            }
-        });
-    }
-
-    private void awardXPForCompletedTask(Task task) {
-        Log.d(TAG, "=== AWARD XP START ===");
-        Log.d(TAG, "Task: " + task.getName());
-        Log.d(TAG, "Task status: " + task.getStatus());
-        Log.d(TAG, "Task xpAwarded: " + task.isXpAwarded());
-
-        if (task.getStatus() == Task.TaskStatus.PAUSED ||
-                task.getStatus() == Task.TaskStatus.CANCELED) {
-            Log.d(TAG, "XP se ne obračunava za pauzirane ili otkazane zadatke");
-            return;
-        }
-
-        if (task.isXpAwarded()) {
-            Log.d(TAG, "XP je već dodijeljen za ovaj zadatak");
+                @Override
+                public void onError(String message) {
+                    Log.e(TAG, "Greška pri završavanju taska: " + message);
+                    listener.onError(message);
+                }
+            });
             return;
         }
 
-        String userId = task.getOwnerId();
-        Log.d(TAG, "User ID: " + userId);
-
-        UserManager userManager = new UserManager();
-        LevelManager levelManager = new LevelManager();
-        TaskRepository taskRepository = new TaskRepository();
-
-        Log.d(TAG, "Učitavanje korisnika...");
-        userManager.getUserById(userId, new UserManager.OnUserLoadListener() {
-            @Override
-            public void onSuccess(User user) {
-                Log.d(TAG, "Korisnik učitan: " + user.getUsername());
-                Log.d(TAG, "Trenutni XP: " + user.getXp());
-                Log.d(TAG, "Trenutni Level: " + user.getLevel());
-
-                Log.d(TAG, "Učitavanje taskova za proveru kvote...");
-                taskRepository.getTasksByUser(userId, new TaskRepository.OnTasksLoadListener() {
-                    @Override
-                    public void onSuccess(List<Task> tasks) {
-                        Log.d(TAG, "Učitano taskova: " + tasks.size());
-
-                        Calendar nowCal = Calendar.getInstance();
-                        int currentDay = nowCal.get(Calendar.DAY_OF_YEAR);
-                        int currentWeek = nowCal.get(Calendar.WEEK_OF_YEAR);
-                        int currentMonth = nowCal.get(Calendar.MONTH);
-                        int currentYear = nowCal.get(Calendar.YEAR);
-
-                        int veryEasyNormalCount = 0, easyImportantCount = 0;
-                        int hardVeryImportantCount = 0, extremeCount = 0, specialCount = 0;
-
-                        for (Task t : tasks) {
-                            if (t.getExecutionTime() == null) continue;
-                            if (t.getStatus() != Task.TaskStatus.DONE) continue;
-                            if (!t.isXpAwarded()) continue;
-
-                            Calendar tCal = Calendar.getInstance();
-                            tCal.setTime(t.getExecutionTime().toDate());
-
-                            if (tCal.get(Calendar.YEAR) == currentYear &&
-                                    tCal.get(Calendar.DAY_OF_YEAR) == currentDay) {
-
-                                if (t.getDifficulty() == Task.Difficulty.VERY_EASY &&
-                                        t.getImportance() == Task.Importance.NORMAL) {
-                                    veryEasyNormalCount++;
-                                }
-                                if (t.getDifficulty() == Task.Difficulty.EASY &&
-                                        t.getImportance() == Task.Importance.IMPORTANT) {
-                                    easyImportantCount++;
-                                }
-                                if (t.getDifficulty() == Task.Difficulty.HARD &&
-                                        t.getImportance() == Task.Importance.VERY_IMPORTANT) {
-                                    hardVeryImportantCount++;
-                                }
-                            }
-
-                            if (tCal.get(Calendar.YEAR) == currentYear &&
-                                    tCal.get(Calendar.WEEK_OF_YEAR) == currentWeek) {
-                                if (t.getDifficulty() == Task.Difficulty.EXTREME) {
-                                    extremeCount++;
-                                }
-                            }
-
-                            if (tCal.get(Calendar.YEAR) == currentYear &&
-                                    tCal.get(Calendar.MONTH) == currentMonth) {
-                                if (t.getImportance() == Task.Importance.SPECIAL) {
-                                    specialCount++;
-                                }
-                            }
-                        }
-
-                        Log.d(TAG, "=== KVOTE ===");
-                        Log.d(TAG, "Very Easy + Normal: " + veryEasyNormalCount + "/5");
-                        Log.d(TAG, "Easy + Important: " + easyImportantCount + "/5");
-                        Log.d(TAG, "Hard + Very Important: " + hardVeryImportantCount + "/2");
-                        Log.d(TAG, "Extreme: " + extremeCount + "/1 (weekly)");
-                        Log.d(TAG, "Special: " + specialCount + "/1 (monthly)");
-
-                        boolean shouldAwardXP = false;
-                        String quotaReason = "";
-
-                        if (task.getDifficulty() == Task.Difficulty.VERY_EASY &&
-                                task.getImportance() == Task.Importance.NORMAL) {
-                            if (veryEasyNormalCount < 5) {
-                                shouldAwardXP = true;
-                                quotaReason = "Very Easy + Normal: " + (veryEasyNormalCount + 1) + "/5";
-                            } else {
-                                quotaReason = "Very Easy + Normal kvota prešla: " + veryEasyNormalCount + "/5";
-                            }
-                        } else if (task.getDifficulty() == Task.Difficulty.EASY &&
-                                task.getImportance() == Task.Importance.IMPORTANT) {
-                            if (easyImportantCount < 5) {
-                                shouldAwardXP = true;
-                                quotaReason = "Easy + Important: " + (easyImportantCount + 1) + "/5";
-                            } else {
-                                quotaReason = "Easy + Important kvota prešla: " + easyImportantCount + "/5";
-                            }
-                        } else if (task.getDifficulty() == Task.Difficulty.HARD &&
-                                task.getImportance() == Task.Importance.VERY_IMPORTANT) {
-                            if (hardVeryImportantCount < 2) {
-                                shouldAwardXP = true;
-                                quotaReason = "Hard + Very Important: " + (hardVeryImportantCount + 1) + "/2";
-                            } else {
-                                quotaReason = "Hard + Very Important kvota prešla: " + hardVeryImportantCount + "/2";
-                            }
-                        } else if (task.getDifficulty() == Task.Difficulty.EXTREME) {
-                            if (extremeCount < 1) {
-                                shouldAwardXP = true;
-                                quotaReason = "Extreme: " + (extremeCount + 1) + "/1 (weekly)";
-                            } else {
-                                quotaReason = "Extreme kvota prešla: " + extremeCount + "/1 (weekly)";
-                            }
-                        } else if (task.getImportance() == Task.Importance.SPECIAL) {
-                            if (specialCount < 1) {
-                                shouldAwardXP = true;
-                                quotaReason = "Special: " + (specialCount + 1) + "/1 (monthly)";
-                            } else {
-                                quotaReason = "Special kvota prešla: " + specialCount + "/1 (monthly)";
-                            }
-                        } else {
-                            shouldAwardXP = true;
-                            quotaReason = "Task ne spada u specifičnu kvotu - XP se dodaje";
-                        }
-
-                        Log.d(TAG, "Kvota razlog: " + quotaReason);
-                        Log.d(TAG, "Dodeli XP: " + shouldAwardXP);
-
-                        if (!shouldAwardXP) {
-                            Log.d(TAG, "Kvota prelazena - XP se ne dodaje");
-                            return;
-                        }
-
-                        int currentLevel = user.getLevel();
-                        int difficultyXP = LevelManager.calculateDifficultyXP(task.getDifficulty(), currentLevel);
-                        int importanceXP = LevelManager.calculateImportanceXP(task.getImportance(), currentLevel);
-                        int totalXP = difficultyXP + importanceXP;
-
-                        Log.d(TAG, "=== XP CALCULATION ===");
-                        Log.d(TAG, "Current Level: " + currentLevel);
-                        Log.d(TAG, "Difficulty: " + task.getDifficulty() + " = " + difficultyXP + " XP");
-                        Log.d(TAG, "Importance: " + task.getImportance() + " = " + importanceXP + " XP");
-                        Log.d(TAG, "Total XP: " + totalXP);
-                        Log.d(TAG, "Old User XP: " + user.getXp());
-                        Log.d(TAG, "New User XP: " + (user.getXp() + totalXP));
-
-                        user.setXp(user.getXp() + totalXP);
-
-                        Log.d(TAG, "=== AFTER XP ADDED ===");
-                        Log.d(TAG, "User XP now: " + user.getXp());
-                        Log.d(TAG, "User Level: " + user.getLevel());
-                        Log.d(TAG, "Required for next level: " + LevelManager.calculateXPForLevel(user.getLevel() + 1));
-
-                        Log.d(TAG, "Čuvanje korisnika...");
-                        userManager.updateUser(user, new UserManager.OnUserOperationListener() {
-                            @Override
-                            public void onSuccess() {
-                                Log.d(TAG, "✅ Korisnik uspešno ažuriran sa novim XP!");
-
-                                Log.d(TAG, "Proveravam level up...");
-                                levelManager.checkAndProcessLevelUp(user, new LevelManager.OnLevelUpListener() {
-                                    @Override
-                                    public void onLevelUp(int newLevel, String newTitle, int ppGained, int coinsGained) {
-                                        Log.d(TAG, "🎉🎉🎉 LEVEL UP! 🎉🎉🎉");
-                                        Log.d(TAG, "Novi nivo: " + newLevel);
-                                        Log.d(TAG, "Nova titula: " + newTitle);
-                                        Log.d(TAG, "Dobijeni PP: " + ppGained);
-
-                                        markTaskAsXpAwarded(task, taskRepository);
-                                    }
-
-                                    @Override
-                                    public void onNoLevelUp() {
-                                        Log.d(TAG, "Još nije vreme za level up");
-                                        markTaskAsXpAwarded(task, taskRepository);
-                                    }
-
-                                    @Override
-                                    public void onError(String message) {
-                                        Log.e(TAG, "❌ Greška pri level up proveri: " + message);
-                                        markTaskAsXpAwarded(task, taskRepository);
-                                    }
-                                });
-                            }
-
-                            @Override
-                            public void onError(String message) {
-                                Log.e(TAG, "❌ Greška pri ažuriranju korisnika: " + message);
-                            }
-                        });
-                    }
-
-                    @Override
-                    public void onError(Exception e) {
-                        Log.e(TAG, "❌ Greška pri učitavanju taskova: " + e.getMessage());
-                    }
-                });
-            }
-
-            @Override
-            public void onError(String message) {
-                Log.e(TAG, "❌ Greška pri učitavanju korisnika: " + message);
-            }
-        });
-    }
-
-    private void markTaskAsXpAwarded(Task task, TaskRepository taskRepository) {
-        task.setXpAwarded(true);
+        task.setStatus(newStatus);
         taskRepository.saveTask(task, new TaskRepository.OnTaskSaveListener() {
             @Override
             public void onSuccess() {
-                Log.d(TAG, "✅ Task označen kao XP nagrađen");
+                Log.d(TAG, "Task status saved successfully");
+                SuccessRateService.invalidate(task.getOwnerId());
+                listener.onSuccess();
             }
 
             @Override
             public void onError(Exception e) {
-                Log.e(TAG, "❌ Greška pri označavanju taska: " + e.getMessage());
+                Log.e(TAG, "Greška pri čuvanju task statusa: " + e.getMessage());
+                listener.onError(e.getMessage());
             }
         });
     }
@@ -399,6 +202,7 @@ public class TaskManager {
             taskRepository.saveTask(task, new TaskRepository.OnTaskSaveListener() {
                 @Override
                 public void onSuccess() {
+                    SuccessRateService.invalidate(task.getOwnerId());
                     Log.d(TAG, "Task older than 3 days -> marked as NOT_DONE");
                 }
 
@@ -414,6 +218,7 @@ public class TaskManager {
         taskRepository.saveTask(task, new TaskRepository.OnTaskSaveListener() {
             @Override
             public void onSuccess() {
+                SuccessRateService.invalidate(task.getOwnerId());
                 listener.onSuccess();
             }
 
@@ -424,40 +229,12 @@ public class TaskManager {
         });
     }
 
-    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
-
     public interface OnSuccessRateCalculatedListener {
         void onCalculated(int successRate);
     }
 
     public void calculateSuccessRate(String userId, OnSuccessRateCalculatedListener listener) {
-        db.collection("tasks")
-                .whereEqualTo("ownerId", userId)
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    int total = 0;
-                    int successful = 0;
-
-                    for (QueryDocumentSnapshot doc : querySnapshot) {
-                        String status = doc.getString("status");
-                        if (status == null) continue;
-
-                        boolean counts = !("PAUSED".equalsIgnoreCase(status) || "CANCELED".equalsIgnoreCase(status));
-
-                        if (counts) {
-                            total++;
-                            if ("DONE".equalsIgnoreCase(status)) successful++;
-                        }
-                    }
-
-                    int rate = (total > 0) ? (int) ((successful * 100.0) / total) : 0;
-                    Log.d("TaskManager", "Success rate: " + successful + "/" + total + " = " + rate + "%");
-                    listener.onCalculated(rate);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("TaskManager", "Greška pri računanju uspešnosti: " + e.getMessage());
-                    listener.onCalculated(0);
-                });
+        successRateService.getSuccessRate(userId, listener);
     }
 
     public void editTask(Task task, String newName, String newDescription,
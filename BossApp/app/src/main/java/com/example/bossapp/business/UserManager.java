@@ -3,8 +3,11 @@ package com.example.bossapp.business;
 import android.util.Log;
 
 import com.example.bossapp.data.model.User;
+import com.example.bossapp.data.repository.UserCache;
+import com.example.bossapp.data.repository.UserRepository;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
 
 public class UserManager {
@@ -34,6 +37,7 @@ public class UserManager {
 
             if (snapshot != null && snapshot.exists()) {
                 User user = snapshot.toObject(User.class);
+                UserCache.getInstance().put(user);
                 listener.onSuccess(user);
             } else {
                 listener.onError("Korisnik nije pronađen");
@@ -42,23 +46,32 @@ public class UserManager {
     }
 
     public void getUserById(String userId, OnUserLoadListener listener) {
-        db.collection("users").document(userId)
-                .get()
-                .addOnSuccessListener(doc -> {
-                    if (doc.exists()) {
-                        listener.onSuccess(doc.toObject(User.class));
-                    } else {
-                        listener.onError("Korisnik ne postoji");
-                    }
-                })
-                .addOnFailureListener(e -> listener.onError(e.getMessage()));
+        UserCache.getInstance().get(userId, new UserRepository.OnUserLoadListener() {
+            @Override
+            public void onSuccess(User user) {
+                listener.onSuccess(user);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (e instanceof FirebaseFirestoreException &&
+                        ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.NOT_FOUND) {
+                    listener.onError("Korisnik ne postoji");
+                } else {
+                    listener.onError(e.getMessage());
+                }
+            }
+        });
     }
 
 
     public void updateUser(User user, OnUserOperationListener listener) {
         db.collection("users").document(user.getUserId())
                 .set(user)
-                .addOnSuccessListener(unused -> listener.onSuccess())
+                .addOnSuccessListener(unused -> {
+                    UserCache.getInstance().put(user);
+                    listener.onSuccess();
+                })
                 .addOnFailureListener(e -> listener.onError(e.getMessage()));
     }
 }
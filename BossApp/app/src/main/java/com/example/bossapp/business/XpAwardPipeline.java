@@ -0,0 +1,140 @@
+package com.example.bossapp.business;
+
+import android.util.Log;
+
+import com.example.bossapp.data.model.Task;
+import com.example.bossapp.data.model.User;
+import com.example.bossapp.data.model.XpQuotaTracker;
+import com.example.bossapp.data.repository.TaskRepository;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+/**
+ * Završava zadatak i dodeljuje XP u jednoj Firestore transakciji:
+ * promena statusa, provera kvote, uvećanje XP, level up petlja i xpAwarded flag.
+ *
+ * Ako bilo koji korak ne uspe, ništa se ne upisuje, pa nema nekonzistentnih
+ * stanja niti duplog dodeljivanja XP-a.
+ */
+public class XpAwardPipeline {
+    private static final String TAG = "XpAwardPipeline";
+    private static final String COLLECTION_TASKS = "tasks";
+    private static final String COLLECTION_USERS = "users";
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final XpQuotaTracker quotaTracker = new XpQuotaTracker();
+    private final TaskRepository taskRepository = new TaskRepository();
+
+    public interface OnXpAwardListener {
+        void onSuccess(AwardResult result);
+        void onError(String message);
+    }
+
+    public static class AwardResult {
+        public final boolean xpAwarded;
+        public final int xpGained;
+        public final int levelsGained;
+        public final int ppGained;
+        public final int newLevel;
+        public final String newTitle;
+        public final String quotaReason;
+
+        AwardResult(boolean xpAwarded, int xpGained, int levelsGained, int ppGained,
+                    int newLevel, String newTitle, String quotaReason) {
+            this.xpAwarded = xpAwarded;
+            this.xpGained = xpGained;
+            this.levelsGained = levelsGained;
+            this.ppGained = ppGained;
+            this.newLevel = newLevel;
+            this.newTitle = newTitle;
+            this.quotaReason = quotaReason;
+        }
+    }
+
+    public void completeTask(Task task, OnXpAwardListener listener) {
+        if (task.getId() == null || task.getOwnerId() == null) {
+            listener.onError("Task is not saved");
+            return;
+        }
+
+        DocumentReference taskRef = db.collection(COLLECTION_TASKS).document(task.getId());
+        DocumentReference userRef = db.collection(COLLECTION_USERS).document(task.getOwnerId());
+        DocumentReference ledgerRef = quotaTracker.getLedgerRef(task.getOwnerId());
+
+        db.runTransaction(transaction -> {
+                    // Sva čitanja moraju biti pre upisa
+                    DocumentSnapshot taskDoc = transaction.get(taskRef);
+                    DocumentSnapshot userDoc = transaction.get(userRef);
+                    XpQuotaTracker.QuotaData quota = XpQuotaTracker.readInTransaction(transaction, ledgerRef);
+
+                    if (!taskDoc.exists() || !userDoc.exists()) {
+                        throw new FirebaseFirestoreException("Task or user not found",
+                                FirebaseFirestoreException.Code.NOT_FOUND);
+                    }
+
+                    String status = taskDoc.getString("status");
+                    Boolean alreadyAwarded = taskDoc.getBoolean("xpAwarded");
+                    if (Task.TaskStatus.DONE.name().equals(status) ||
+                            Task.TaskStatus.CANCELED.name().equals(status) ||
+                            Task.TaskStatus.NOT_DONE.name().equals(status) ||
+                            Boolean.TRUE.equals(alreadyAwarded)) {
+                        // INVALID_ARGUMENT jer SDK ponavlja transakciju za ABORTED/FAILED_PRECONDITION
+                        throw new FirebaseFirestoreException("Completed or canceled tasks cannot be changed",
+                                FirebaseFirestoreException.Code.INVALID_ARGUMENT);
+                    }
+
+                    // XP i kvota se računaju iz taskDoc-a, ne iz prosleđenog (možda zastarelog) Task-a
+                    User user = userDoc.toObject(User.class);
+                    Task oldTask = taskDoc.toObject(Task.class);
+                    if (!task.getOwnerId().equals(oldTask.getOwnerId())) {
+                        throw new FirebaseFirestoreException("Task does not belong to user",
+                                FirebaseFirestoreException.Code.INVALID_ARGUMENT);
+                    }
+                    Task doneTask = taskDoc.toObject(Task.class);
+                    doneTask.setStatus(Task.TaskStatus.DONE);
+                    XpQuotaTracker.QuotaBucket bucket =
+                            XpQuotaTracker.QuotaBucket.forTask(oldTask.getDifficulty(), oldTask.getImportance());
+                    boolean granted = quota.canAdd(bucket);
+                    if (granted) quota.increment(bucket);
+                    String reason = XpQuotaTracker.describe(bucket, quota, granted);
+
+                    taskRepository.applyStatsDelta(transaction, oldTask.getOwnerId(), oldTask, doneTask);
+
+                    if (!granted) {
+                        transaction.update(taskRef, "status", Task.TaskStatus.DONE.name());
+                        return new AwardResult(false, 0, 0, 0, user.getLevel(), user.getTitle(), reason);
+                    }
+
+                    int currentLevel = user.getLevel();
+                    int totalXP = LevelManager.calculateDifficultyXP(oldTask.getDifficulty(), currentLevel)
+                            + LevelManager.calculateImportanceXP(oldTask.getImportance(), currentLevel);
+
+                    user.setXp(user.getXp() + totalXP);
+                    LevelManager.LevelUpResult levelUp = LevelManager.applyLevelUps(user);
+
+                    transaction.update(taskRef,
+                            "status", Task.TaskStatus.DONE.name(),
+                            "xpAwarded", true);
+                    transaction.update(userRef,
+                            "xp", user.getXp(),
+                            "level", user.getLevel(),
+                            "pp", user.getPp(),
+                            "title", user.getTitle());
+                    XpQuotaTracker.writeInTransaction(transaction, ledgerRef, quota);
+
+                    return new AwardResult(true, totalXP, levelUp.levelsGained, levelUp.ppGained,
+                            user.getLevel(), user.getTitle(), reason);
+                }).addOnSuccessListener(result -> {
+                    Log.d(TAG, "Task završen, kvota: " + result.quotaReason + ", XP: +" + result.xpGained);
+                    task.setStatus(Task.TaskStatus.DONE);
+                    task.setXpAwarded(result.xpAwarded);
+                    listener.onSuccess(result);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Greška pri završavanju taska: " + e.getMessage());
+                    listener.onError(e.getMessage());
+                });
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.bossapp.data.local;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.bossapp.data.model.AllianceMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lokalna kopija poruka iz chata saveza.
+ *
+ * Za svaki savez se čuva neprekinut niz najnovijih poruka, pa je najveći timestamp
+ * granica od koje se sa Firestore-a povlače samo nove poruke. Starije od
+ * RETENTION_DAYS i sve preko MAX_MESSAGES_PER_ALLIANCE se brišu pri kompakciji.
+ * Metode rade sa bazom i ne smeju se zvati sa UI thread-a.
+ */
+public class ChatMessageStore extends SQLiteOpenHelper {
+    private static final String DB_NAME = "bossapp_chat.db";
+    private static final int DB_VERSION = 1;
+
+    private static final String TABLE_MESSAGES = "messages";
+    private static final String COL_MESSAGE_ID = "messageId";
+    private static final String COL_ALLIANCE_ID = "allianceId";
+    private static final String COL_SENDER_ID = "senderId";
+    private static final String COL_SENDER_USERNAME = "senderUsername";
+    private static final String COL_SENDER_AVATAR_INDEX = "senderAvatarIndex";
+    private static final String COL_MESSAGE_TEXT = "messageText";
+    private static final String COL_TIMESTAMP = "timestamp";
+
+    public static final int MAX_MESSAGES_PER_ALLIANCE = 500;
+    public static final long RETENTION_DAYS = 30;
+
+    private static ChatMessageStore instance;
+
+    public static synchronized ChatMessageStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatMessageStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ChatMessageStore(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MESSAGES + " ("
+                + COL_MESSAGE_ID + " TEXT PRIMARY KEY, "
+                + COL_ALLIANCE_ID + " TEXT NOT NULL, "
+                + COL_SENDER_ID + " TEXT, "
+                + COL_SENDER_USERNAME + " TEXT, "
+                + COL_SENDER_AVATAR_INDEX + " INTEGER, "
+                + COL_MESSAGE_TEXT + " TEXT, "
+                + COL_TIMESTAMP + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_messages_alliance_time ON " + TABLE_MESSAGES
+                + " (" + COL_ALLIANCE_ID + ", " + COL_TIMESTAMP + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Keš se može ponovo napuniti sa servera
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MESSAGES);
+        onCreate(db);
+    }
+
+    // Poslednjih limit poruka, u rastućem redosledu
+    public List<AllianceMessage> getLatestMessages(String allianceId, int limit) {
+        return queryDescending(COL_ALLIANCE_ID + " = ?", new String[]{allianceId}, limit);
+    }
+
+    /**
+     * limit poruka pre poruke (beforeTimestamp, beforeMessageId), u rastućem redosledu.
+     * Poruke sa istim timestamp-om se razlikuju po id-ju, kao i na serveru.
+     */
+    public List<AllianceMessage> getMessagesBefore(String allianceId, long beforeTimestamp,
+                                                   String beforeMessageId, int limit) {
+        String timestamp = String.valueOf(beforeTimestamp);
+        return queryDescending(COL_ALLIANCE_ID + " = ? AND (" + COL_TIMESTAMP + " < ? OR ("
+                        + COL_TIMESTAMP + " = ? AND " + COL_MESSAGE_ID + " < ?))",
+                new String[]{allianceId, timestamp, timestamp, beforeMessageId}, limit);
+    }
+
+    private List<AllianceMessage> queryDescending(String selection, String[] args, int limit) {
+        List<AllianceMessage> messages = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_MESSAGES, null, selection, args,
+                null, null, COL_TIMESTAMP + " DESC, " + COL_MESSAGE_ID + " DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                messages.add(fromCursor(cursor));
+            }
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    public void saveMessages(List<AllianceMessage> messages) {
+        if (messages.isEmpty()) return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (AllianceMessage message : messages) {
+                db.insertWithOnConflict(TABLE_MESSAGES, null, toValues(message),
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void clear(String allianceId) {
+        getWritableDatabase().delete(TABLE_MESSAGES, COL_ALLIANCE_ID + " = ?", new String[]{allianceId});
+    }
+
+    /**
+     * Briše poruke starije od RETENTION_DAYS i sve osim MAX_MESSAGES_PER_ALLIANCE najnovijih.
+     * Uvek se briše najstariji deo, pa sačuvane poruke ostaju neprekinut niz.
+     */
+    public void compact(String allianceId) {
+        long cutoff = System.currentTimeMillis() - RETENTION_DAYS * 24 * 60 * 60 * 1000;
+        SQLiteDatabase db = getWritableDatabase();
+
+        db.delete(TABLE_MESSAGES, COL_ALLIANCE_ID + " = ? AND " + COL_TIMESTAMP + " < ?",
+                new String[]{allianceId, String.valueOf(cutoff)});
+
+        db.execSQL("DELETE FROM " + TABLE_MESSAGES
+                        + " WHERE " + COL_ALLIANCE_ID + " = ? AND " + COL_MESSAGE_ID + " NOT IN ("
+                        + "SELECT " + COL_MESSAGE_ID + " FROM " + TABLE_MESSAGES
+                        + " WHERE " + COL_ALLIANCE_ID + " = ?"
+                        + " ORDER BY " + COL_TIMESTAMP + " DESC LIMIT " + MAX_MESSAGES_PER_ALLIANCE + ")",
+                new Object[]{allianceId, allianceId});
+    }
+
+    private static ContentValues toValues(AllianceMessage message) {
+        ContentValues values = new ContentValues();
+        values.put(COL_MESSAGE_ID, message.getMessageId());
+        values.put(COL_ALLIANCE_ID, message.getAllianceId());
+        values.put(COL_SENDER_ID, message.getSenderId());
+        values.put(COL_SENDER_USERNAME, message.getSenderUsername());
+        values.put(COL_SENDER_AVATAR_INDEX, message.getSenderAvatarIndex());
+        values.put(COL_MESSAGE_TEXT, message.getMessageText());
+        values.put(COL_TIMESTAMP, message.getTimestamp());
+        return values;
+    }
+
+    private static AllianceMessage fromCursor(Cursor cursor) {
+        AllianceMessage message = new AllianceMessage();
+        message.setMessageId(cursor.getString(cursor.getColumnIndexOrThrow(COL_MESSAGE_ID)));
+        message.setAllianceId(cursor.getString(cursor.getColumnIndexOrThrow(COL_ALLIANCE_ID)));
+        message.setSenderId(cursor.getString(cursor.getColumnIndexOrThrow(COL_SENDER_ID)));
+        message.setSenderUsername(cursor.getString(cursor.getColumnIndexOrThrow(COL_SENDER_USERNAME)));
+        message.setSenderAvatarIndex(cursor.getInt(cursor.getColumnIndexOrThrow(COL_SENDER_AVATAR_INDEX)));
+        message.setMessageText(cursor.getString(cursor.getColumnIndexOrThrow(COL_MESSAGE_TEXT)));
+        message.setTimestamp(cursor.getLong(cursor.getColumnIndexOrThrow(COL_TIMESTAMP)));
+        return message;
+    }
+}
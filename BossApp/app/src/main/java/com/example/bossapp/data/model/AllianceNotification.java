@@ -13,6 +13,7 @@ public class AllianceNotification {
     private String senderUsername;
     private String messageText;
     private String message;
+    private int unreadCount; // samo za "alliance_message" - broj poruka od poslednjeg čitanja
     private long timestamp;
     private boolean read;
 
@@ -42,6 +43,7 @@ public class AllianceNotification {
         map.put("senderUsername", senderUsername);
         map.put("messageText", messageText);
         map.put("message", message);
+        map.put("unreadCount", unreadCount);
         map.put("timestamp", timestamp);
         map.put("read", read);
         return map;
@@ -120,6 +122,14 @@ public class AllianceNotification {
         this.message = message;
     }
 
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
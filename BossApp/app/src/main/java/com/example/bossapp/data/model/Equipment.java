@@ -78,7 +78,9 @@ public class Equipment {
 
     // Potion Constructor
     public Equipment(String userId, PotionType potionType) {
-        this.equipmentId = java.util.UUID.randomUUID().toString();
+        this.equipmentId = potionType.isTemporary
+                ? stackId(userId, potionType.name())
+                : java.util.UUID.randomUUID().toString();
         this.userId = userId;
         this.type = EquipmentType.POTION;
         this.subType = potionType.name();
@@ -116,6 +118,15 @@ public class Equipment {
         this.acquiredAt = System.currentTimeMillis();
     }
 
+    // Privremeni napici istog tipa se slažu u jedan dokument sa quantity
+    public static String stackId(String userId, String subType) {
+        return userId + "_" + subType;
+    }
+
+    public boolean canStack() {
+        return type == EquipmentType.POTION && PotionType.valueOf(subType).isTemporary;
+    }
+
     // Pricing by user level
     public static int calculatePrice(EquipmentType type, String subType, int userLevel) {
         // Reward for defeating the boss at the end of the PREVIOUS level
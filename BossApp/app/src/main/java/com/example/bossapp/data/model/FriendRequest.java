@@ -16,7 +16,7 @@ public class FriendRequest {
 
     public FriendRequest(String senderId, String receiverId,
                          String senderUsername, int senderAvatarIndex) {
-        this.requestId = senderId + "_" + receiverId + "_" + System.currentTimeMillis();
+        this.requestId = pairId(senderId, receiverId);
         this.senderId = senderId;
         this.receiverId = receiverId;
         this.senderUsername = senderUsername;
@@ -25,6 +25,13 @@ public class FriendRequest {
         this.status = "pending";
     }
 
+    // Isti ID za oba smera, pa za par korisnika postoji najviše jedan zahtev
+    public static String pairId(String userId1, String userId2) {
+        return userId1.compareTo(userId2) < 0
+                ? userId1 + "_" + userId2
+                : userId2 + "_" + userId1;
+    }
+
     public Map<String, Object> toMap() {
         Map<String, Object> map = new HashMap<>();
         map.put("requestId", requestId);
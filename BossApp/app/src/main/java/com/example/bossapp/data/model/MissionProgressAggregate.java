@@ -0,0 +1,169 @@
+package com.example.bossapp.data.model;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Napredak specijalne misije u memoriji, ažuriran inkrementalno iz snapshot listenera.
+ *
+ * Primenjuju se samo promenjeni memberProgress dokumenti: ukupna šteta se koriguje
+ * za razliku stare i nove vrednosti člana, a adapter dobija tačne pozicije
+ * dodatih, izmenjenih i uklonjenih redova.
+ */
+public class MissionProgressAggregate {
+
+    public interface OnRowsChangedListener {
+        void onInserted(int position);
+        void onChanged(int position);
+        void onRemoved(int position);
+    }
+
+    private final List<MemberProgress> rows;
+    private final List<String> rowMemberIds = new ArrayList<>();
+
+    // Stara mapa "progress" iz misije i memberProgress dokumenti, po članu
+    private final Map<String, Map<String, Object>> legacyProgress = new HashMap<>();
+    private final Map<String, Map<String, Object>> memberProgress = new HashMap<>();
+    private final Map<String, Integer> damageByMember = new HashMap<>();
+
+    private int totalDamage;
+    private int bossHp;
+
+    public MissionProgressAggregate(List<MemberProgress> rows) {
+        this.rows = rows;
+    }
+
+    public void clear() {
+        rows.clear();
+        rowMemberIds.clear();
+        legacyProgress.clear();
+        memberProgress.clear();
+        damageByMember.clear();
+        totalDamage = 0;
+        bossHp = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void applyMission(DocumentSnapshot missionDoc, OnRowsChangedListener listener) {
+        if (missionDoc == null || !missionDoc.exists()) return;
+
+        Object hp = missionDoc.get("bossHp");
+        bossHp = hp instanceof Number ? ((Number) hp).intValue() : 0;
+
+        Map<String, Object> legacy = (Map<String, Object>) missionDoc.get("progress");
+        Map<String, Map<String, Object>> newLegacy = new HashMap<>();
+        if (legacy != null) {
+            for (Map.Entry<String, Object> entry : legacy.entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    newLegacy.put(entry.getKey(), (Map<String, Object>) entry.getValue());
+                }
+            }
+        }
+
+        // Redovi nestali iz stare mape se uklanjaju, a osvežavaju se samo izmenjeni
+        for (String memberId : new ArrayList<>(legacyProgress.keySet())) {
+            if (!newLegacy.containsKey(memberId)) {
+                legacyProgress.remove(memberId);
+                refreshMember(memberId, listener);
+            }
+        }
+        for (Map.Entry<String, Map<String, Object>> entry : newLegacy.entrySet()) {
+            Map<String, Object> previous = legacyProgress.put(entry.getKey(), entry.getValue());
+            if (!entry.getValue().equals(previous)) {
+                refreshMember(entry.getKey(), listener);
+            }
+        }
+    }
+
+    public void applyMemberChanges(List<DocumentChange> changes, OnRowsChangedListener listener) {
+        for (DocumentChange change : changes) {
+            String memberId = change.getDocument().getId();
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                memberProgress.remove(memberId);
+            } else {
+                memberProgress.put(memberId, change.getDocument().getData());
+            }
+            refreshMember(memberId, listener);
+        }
+    }
+
+    private void refreshMember(String memberId, OnRowsChangedListener listener) {
+        Map<String, Object> legacy = legacyProgress.get(memberId);
+        Map<String, Object> shard = memberProgress.get(memberId);
+        int position = rowMemberIds.indexOf(memberId);
+
+        if (legacy == null && shard == null) {
+            Integer oldDamage = damageByMember.remove(memberId);
+            if (oldDamage != null) totalDamage -= oldDamage;
+            if (position >= 0) {
+                rowMemberIds.remove(position);
+                rows.remove(position);
+                listener.onRemoved(position);
+            }
+            return;
+        }
+
+        Map<String, Object> merged = new HashMap<>();
+        mergeProgress(merged, legacy);
+        mergeProgress(merged, shard);
+
+        int damage = getInt(merged, "damageDealt");
+        Integer oldDamage = damageByMember.put(memberId, damage);
+        totalDamage += damage - (oldDamage != null ? oldDamage : 0);
+
+        MemberProgress progress = toMemberProgress(merged);
+        if (position >= 0) {
+            rows.set(position, progress);
+            listener.onChanged(position);
+        } else {
+            rowMemberIds.add(memberId);
+            rows.add(progress);
+            listener.onInserted(rows.size() - 1);
+        }
+    }
+
+    /**
+     * Brojači se sabiraju, ostala polja (username, flagovi) se prepisuju.
+     */
+    public static void mergeProgress(Map<String, Object> target, Map<String, Object> source) {
+        if (source == null) return;
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            Object current = target.get(entry.getKey());
+            if (entry.getValue() instanceof Number && current instanceof Number) {
+                target.put(entry.getKey(),
+                        ((Number) current).longValue() + ((Number) entry.getValue()).longValue());
+            } else {
+                target.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public static int getInt(Map<String, Object> progress, String field) {
+        Object value = progress.get(field);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    public static MemberProgress toMemberProgress(Map<String, Object> data) {
+        return new MemberProgress(
+                (String) data.get("username"),
+                getInt(data, "storePurchases"),
+                getInt(data, "bossHits"),
+                getInt(data, "easyTasks"),
+                getInt(data, "otherTasks"),
+                Boolean.TRUE.equals(data.get("noUnfinishedTasks")),
+                getInt(data, "messageDays"));
+    }
+
+    public int getTotalDamage() { return totalDamage; }
+    public int getBossHp() { return bossHp; }
+    public int getRemainingHp() { return Math.max(0, bossHp - totalDamage); }
+    public int getMemberDamage(String memberId) {
+        Integer damage = damageByMember.get(memberId);
+        return damage != null ? damage : 0;
+    }
+}
@@ -3,12 +3,14 @@ package com.example.bossapp.data.model;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class User {
     private String userId;
     private String email;
     private String username;
+    private String usernameLower;
     private int avatarIndex;
     private int level;
     private String title;
@@ -42,11 +44,30 @@ public class User {
         this.currentAllianceId = null;
     }
 
+    public User(User other) {
+        this.userId = other.userId;
+        this.email = other.email;
+        this.username = other.username;
+        this.usernameLower = other.usernameLower;
+        this.avatarIndex = other.avatarIndex;
+        this.level = other.level;
+        this.title = other.title;
+        this.xp = other.xp;
+        this.pp = other.pp;
+        this.coins = other.coins;
+        this.createdAt = other.createdAt;
+        this.emailVerified = other.emailVerified;
+        this.friendIds = new ArrayList<>(other.getFriendIds());
+        this.currentAllianceId = other.currentAllianceId;
+        this.currentBossNumber = other.currentBossNumber;
+    }
+
     public Map<String, Object> toMap() {
         Map<String, Object> map = new HashMap<>();
         map.put("userId", userId);
         map.put("email", email);
         map.put("username", username);
+        map.put("usernameLower", getUsernameLower());
         map.put("avatarIndex", avatarIndex);
         map.put("level", level);
         map.put("title", title);
@@ -69,6 +90,17 @@ public class User {
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
 
+    // Za pretragu bez obzira na velika/mala slova, uvek izvedeno iz username-a
+    public String getUsernameLower() {
+        return username != null ? username.toLowerCase(Locale.ROOT) : null;
+    }
+    public void setUsernameLower(String usernameLower) { this.usernameLower = usernameLower; }
+
+    // Stari nalozi nemaju usernameLower u Firestore-u
+    public boolean hasStoredUsernameLower() {
+        return usernameLower != null && usernameLower.equals(getUsernameLower());
+    }
+
     public int getAvatarIndex() { return avatarIndex; }
     public void setAvatarIndex(int avatarIndex) { this.avatarIndex = avatarIndex; }
 
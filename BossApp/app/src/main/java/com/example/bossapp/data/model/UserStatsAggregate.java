@@ -0,0 +1,161 @@
+package com.example.bossapp.data.model;
+
+import com.example.bossapp.business.EpochDays;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Materijalizovana statistika korisnika (userStats/{userId}).
+ *
+ * Dokument se ažurira inkrementalno pri svakom čuvanju ili brisanju zadatka:
+ * računa se razlika doprinosa stare i nove verzije zadatka i upisuje preko
+ * FieldValue.increment. Dani su ključevi u mapama (broj dana od 1970-01-01).
+ */
+public class UserStatsAggregate {
+    public static final String FIELD_INITIALIZED = "initialized";
+    public static final String FIELD_TOTAL_TASKS = "totalTasks";
+    public static final String FIELD_DONE_DIFFICULTY_SUM = "doneDifficultySum";
+    public static final String FIELD_STATUS_COUNTS = "statusCounts";
+    public static final String FIELD_CATEGORY_DONE = "categoryDone";
+    public static final String FIELD_TASK_DAYS = "taskDays";
+    public static final String FIELD_DONE_BY_DAY = "doneByDay";
+    public static final String FIELD_XP_BY_DAY = "xpByDay";
+
+    private boolean initialized;
+    private final Map<String, Long> scalars = new HashMap<>();
+    private final Map<String, Map<String, Long>> maps = new HashMap<>();
+
+    public boolean isInitialized() { return initialized; }
+
+    public long get(String field) {
+        Long value = scalars.get(field);
+        return value != null ? value : 0;
+    }
+
+    public Map<String, Long> getMap(String field) {
+        Map<String, Long> map = maps.get(field);
+        return map != null ? map : new HashMap<>();
+    }
+
+    public long getStatusCount(Task.TaskStatus status) {
+        Long value = getMap(FIELD_STATUS_COUNTS).get(status.name());
+        return value != null ? value : 0;
+    }
+
+    private void add(String field, long value) {
+        if (value == 0) return;
+        scalars.put(field, get(field) + value);
+    }
+
+    private void add(String field, String key, long value) {
+        if (value == 0 || key == null) return;
+        Map<String, Long> map = maps.get(field);
+        if (map == null) {
+            map = new HashMap<>();
+            maps.put(field, map);
+        }
+        Long current = map.get(key);
+        map.put(key, (current != null ? current : 0) + value);
+    }
+
+    /**
+     * Dodaje (sign = 1) ili oduzima (sign = -1) doprinos jednog zadatka.
+     */
+    private void accumulate(Task task, int sign) {
+        if (task == null) return;
+
+        add(FIELD_TOTAL_TASKS, sign);
+        if (task.getStatus() != null) {
+            add(FIELD_STATUS_COUNTS, task.getStatus().name(), sign);
+        }
+
+        String dayKey = task.getExecutionTime() != null
+                ? String.valueOf(EpochDays.toEpochDay(task.getExecutionTime().toDate()))
+                : null;
+        add(FIELD_TASK_DAYS, dayKey, sign);
+
+        if (task.getStatus() == Task.TaskStatus.DONE) {
+            if (task.getDifficulty() != null) {
+                add(FIELD_DONE_DIFFICULTY_SUM, (long) sign * task.getDifficulty().getXp());
+            }
+            add(FIELD_CATEGORY_DONE, task.getCategoryName(), sign);
+            add(FIELD_DONE_BY_DAY, dayKey, sign);
+            add(FIELD_XP_BY_DAY, dayKey, (long) sign * task.getTotalXP());
+        }
+    }
+
+    /**
+     * Mapa za set(..., SetOptions.merge()) koja prevodi oldTask u newTask.
+     * Bilo koji od zadataka može biti null (kreiranje ili brisanje).
+     */
+    public static Map<String, Object> delta(Task oldTask, Task newTask) {
+        UserStatsAggregate diff = new UserStatsAggregate();
+        diff.accumulate(oldTask, -1);
+        diff.accumulate(newTask, 1);
+
+        Map<String, Object> update = new HashMap<>();
+        for (Map.Entry<String, Long> entry : diff.scalars.entrySet()) {
+            if (entry.getValue() != 0) {
+                update.put(entry.getKey(), FieldValue.increment(entry.getValue()));
+            }
+        }
+        for (Map.Entry<String, Map<String, Long>> entry : diff.maps.entrySet()) {
+            Map<String, Object> nested = new HashMap<>();
+            for (Map.Entry<String, Long> value : entry.getValue().entrySet()) {
+                if (value.getValue() != 0) {
+                    nested.put(value.getKey(), FieldValue.increment(value.getValue()));
+                }
+            }
+            if (!nested.isEmpty()) update.put(entry.getKey(), nested);
+        }
+        return update;
+    }
+
+    /**
+     * Kompletan preračun iz svih zadataka - koristi se samo za popravku ili proveru.
+     */
+    public static UserStatsAggregate fromTasks(List<Task> tasks) {
+        UserStatsAggregate aggregate = new UserStatsAggregate();
+        aggregate.initialized = true;
+        for (Task task : tasks) {
+            aggregate.accumulate(task, 1);
+        }
+        return aggregate;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static UserStatsAggregate fromSnapshot(DocumentSnapshot snapshot) {
+        UserStatsAggregate aggregate = new UserStatsAggregate();
+        if (snapshot == null || !snapshot.exists() || snapshot.getData() == null) return aggregate;
+
+        for (Map.Entry<String, Object> entry : snapshot.getData().entrySet()) {
+            Object value = entry.getValue();
+            if (FIELD_INITIALIZED.equals(entry.getKey())) {
+                aggregate.initialized = Boolean.TRUE.equals(value);
+            } else if (value instanceof Number) {
+                aggregate.scalars.put(entry.getKey(), ((Number) value).longValue());
+            } else if (value instanceof Map) {
+                Map<String, Long> map = new HashMap<>();
+                for (Map.Entry<String, Object> nested : ((Map<String, Object>) value).entrySet()) {
+                    if (nested.getValue() instanceof Number) {
+                        map.put(nested.getKey(), ((Number) nested.getValue()).longValue());
+                    }
+                }
+                aggregate.maps.put(entry.getKey(), map);
+            }
+        }
+        return aggregate;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put(FIELD_INITIALIZED, initialized);
+        map.putAll(scalars);
+        map.putAll(maps);
+        return map;
+    }
+}
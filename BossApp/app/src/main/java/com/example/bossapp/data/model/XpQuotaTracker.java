@@ -1,78 +1,188 @@
 package com.example.bossapp.data.model;
 
 import com.example.bossapp.data.model.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Ledger kvota za XP po korisniku (xpLog/{userId}).
+ *
+ * Umesto skeniranja cele istorije zadataka, dokument cuva brojace za dnevne,
+ * nedeljne i mesecne kvote. Brojaci se automatski resetuju kada se promeni
+ * dan/nedelja/mesec, a provera i uvecanje se rade u jednoj transakciji.
+ */
 public class XpQuotaTracker {
+    private static final String COLLECTION_XP_LOG = "xpLog";
+    private static final String FIELD_DAY_KEY = "dayKey";
+    private static final String FIELD_WEEK_KEY = "weekKey";
+    private static final String FIELD_MONTH_KEY = "monthKey";
+
     private final FirebaseFirestore db = FirebaseFirestore.getInstance();
 
-    public interface OnQuotaLoadListener {
-        void onSuccess(QuotaData quota);
-        void onError(String message);
+    public enum Period {
+        DAY,
+        WEEK,
+        MONTH
+    }
+
+    public enum QuotaBucket {
+        VERY_EASY_NORMAL(Period.DAY, 5, "Very Easy + Normal"),
+        EASY_IMPORTANT(Period.DAY, 5, "Easy + Important"),
+        HARD_VERY_IMPORTANT(Period.DAY, 2, "Hard + Very Important"),
+        EXTREME(Period.WEEK, 1, "Extreme"),
+        SPECIAL(Period.MONTH, 1, "Special");
+
+        private final Period period;
+        private final int limit;
+        private final String label;
+
+        QuotaBucket(Period period, int limit, String label) {
+            this.period = period;
+            this.limit = limit;
+            this.label = label;
+        }
+
+        public Period getPeriod() { return period; }
+        public int getLimit() { return limit; }
+        public String getLabel() { return label; }
+
+        /**
+         * Vraca kvotu u koju zadatak spada, ili null ako zadatak nema ogranicenje.
+         * Redosled provera je isti kao ranije u TaskManager-u.
+         */
+        public static QuotaBucket forTask(Task.Difficulty difficulty, Task.Importance importance) {
+            if (difficulty == Task.Difficulty.VERY_EASY && importance == Task.Importance.NORMAL) {
+                return VERY_EASY_NORMAL;
+            }
+            if (difficulty == Task.Difficulty.EASY && importance == Task.Importance.IMPORTANT) {
+                return EASY_IMPORTANT;
+            }
+            if (difficulty == Task.Difficulty.HARD && importance == Task.Importance.VERY_IMPORTANT) {
+                return HARD_VERY_IMPORTANT;
+            }
+            if (difficulty == Task.Difficulty.EXTREME) {
+                return EXTREME;
+            }
+            if (importance == Task.Importance.SPECIAL) {
+                return SPECIAL;
+            }
+            return null;
+        }
     }
 
     public static class QuotaData {
-        private final Map<String, Integer> difficultyCount = new HashMap<>();
-        private final Map<String, Integer> importanceCount = new HashMap<>();
-
-        public boolean canAdd(Task.Difficulty difficulty) {
-            switch (difficulty) {
-                case VERY_EASY: case EASY:
-                    return getCount(difficulty.name()) < 5;
-                case HARD:
-                    return getCount(difficulty.name()) < 2;
-                case EXTREME:
-                    return getCount(difficulty.name()) < 1;
+        private long dayKey;
+        private long weekKey;
+        private long monthKey;
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        public static QuotaData fromSnapshot(DocumentSnapshot snapshot) {
+            QuotaData quota = new QuotaData();
+            if (snapshot == null || !snapshot.exists()) return quota;
+
+            Long day = snapshot.getLong(FIELD_DAY_KEY);
+            Long week = snapshot.getLong(FIELD_WEEK_KEY);
+            Long month = snapshot.getLong(FIELD_MONTH_KEY);
+            quota.dayKey = day != null ? day : 0;
+            quota.weekKey = week != null ? week : 0;
+            quota.monthKey = month != null ? month : 0;
+
+            for (QuotaBucket bucket : QuotaBucket.values()) {
+                Long count = snapshot.getLong(bucket.name());
+                if (count != null) quota.counts.put(bucket.name(), count.intValue());
             }
-            return true;
+            return quota;
         }
 
-        public boolean canAdd(Task.Importance importance) {
-            switch (importance) {
-                case NORMAL: case IMPORTANT:
-                    return getCount(importance.name()) < 5;
-                case VERY_IMPORTANT:
-                    return getCount(importance.name()) < 2;
-                case SPECIAL:
-                    return getCount(importance.name()) < 1;
+        /**
+         * Resetuje brojace ciji je period istekao u odnosu na prosledjeno vreme.
+         */
+        public void rollOver(Calendar now) {
+            long currentDay = now.get(Calendar.YEAR) * 1000L + now.get(Calendar.DAY_OF_YEAR);
+            long currentWeek = now.getWeekYear() * 100L + now.get(Calendar.WEEK_OF_YEAR);
+            long currentMonth = now.get(Calendar.YEAR) * 100L + now.get(Calendar.MONTH);
+
+            if (dayKey != currentDay) {
+                reset(Period.DAY);
+                dayKey = currentDay;
+            }
+            if (weekKey != currentWeek) {
+                reset(Period.WEEK);
+                weekKey = currentWeek;
+            }
+            if (monthKey != currentMonth) {
+                reset(Period.MONTH);
+                monthKey = currentMonth;
             }
-            return true;
         }
 
-        public int getCount(String key) {
-            return difficultyCount.getOrDefault(key, 0);
+        private void reset(Period period) {
+            for (QuotaBucket bucket : QuotaBucket.values()) {
+                if (bucket.getPeriod() == period) counts.remove(bucket.name());
+            }
         }
 
-        public void increment(Task.Difficulty difficulty, Task.Importance importance) {
-            difficultyCount.put(difficulty.name(), getCount(difficulty.name()) + 1);
-            importanceCount.put(importance.name(), getCount(importance.name()) + 1);
+        public boolean canAdd(QuotaBucket bucket) {
+            return bucket == null || getCount(bucket) < bucket.getLimit();
         }
+
+        public int getCount(QuotaBucket bucket) {
+            Integer count = counts.get(bucket.name());
+            return count != null ? count : 0;
+        }
+
+        public void increment(QuotaBucket bucket) {
+            if (bucket == null) return;
+            counts.put(bucket.name(), getCount(bucket) + 1);
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put(FIELD_DAY_KEY, dayKey);
+            map.put(FIELD_WEEK_KEY, weekKey);
+            map.put(FIELD_MONTH_KEY, monthKey);
+            for (QuotaBucket bucket : QuotaBucket.values()) {
+                map.put(bucket.name(), getCount(bucket));
+            }
+            return map;
+        }
+    }
+
+    public DocumentReference getLedgerRef(String userId) {
+        return db.collection(COLLECTION_XP_LOG).document(userId);
     }
 
-    public void getDailyXpStats(String userId, OnQuotaLoadListener listener) {
-        db.collection("xpLog")
-                .document(userId)
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    QuotaData quota = new QuotaData();
-                    if (snapshot.exists() && snapshot.getData() != null) {
-                        Map<String, Object> data = snapshot.getData();
-                        for (String key : data.keySet()) {
-                            quota.difficultyCount.put(key, ((Long) data.get(key)).intValue());
-                        }
-                    }
-                    listener.onSuccess(quota);
-                })
-                .addOnFailureListener(e -> listener.onError(e.getMessage()));
+    /**
+     * Cita ledger unutar transakcije i odmah primenjuje reset isteklih perioda.
+     */
+    public static QuotaData readInTransaction(Transaction transaction, DocumentReference ledgerRef)
+            throws FirebaseFirestoreException {
+        QuotaData quota = QuotaData.fromSnapshot(transaction.get(ledgerRef));
+        quota.rollOver(Calendar.getInstance());
+        return quota;
     }
 
-    public void incrementQuota(String userId, Task.Difficulty difficulty, Task.Importance importance) {
-        db.collection("xpLog").document(userId)
-                .update(difficulty.name(), com.google.firebase.firestore.FieldValue.increment(1),
-                        importance.name(), com.google.firebase.firestore.FieldValue.increment(1));
+    public static void writeInTransaction(Transaction transaction, DocumentReference ledgerRef,
+                                          QuotaData quota) {
+        transaction.set(ledgerRef, quota.toMap());
+    }
+
+    public static String describe(QuotaBucket bucket, QuotaData quota, boolean granted) {
+        if (bucket == null) return "Task ne spada u specifičnu kvotu - XP se dodaje";
+
+        String suffix = bucket.getPeriod() == Period.WEEK ? " (weekly)"
+                : bucket.getPeriod() == Period.MONTH ? " (monthly)" : "";
+        if (granted) {
+            return bucket.getLabel() + ": " + quota.getCount(bucket) + "/" + bucket.getLimit() + suffix;
+        }
+        return bucket.getLabel() + " kvota prešla: " + quota.getCount(bucket) + "/" + bucket.getLimit() + suffix;
     }
 }
 
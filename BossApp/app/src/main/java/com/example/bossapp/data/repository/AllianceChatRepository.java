@@ -3,10 +3,15 @@ package com.example.bossapp.data.repository;
 import android.util.Log;
 
 import com.example.bossapp.data.model.AllianceMessage;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -19,6 +24,12 @@ public class AllianceChatRepository {
     private static final String COLLECTION_NOTIFICATIONS = "notifications";
     private static final String COLLECTION_ALLIANCES = "alliances";
 
+    public static final int MESSAGE_WINDOW_SIZE = 50;
+    public static final int MESSAGE_PAGE_SIZE = 30;
+
+    // Firestore dozvoljava 500 operacija po batch-u
+    private static final int MAX_BATCH_WRITES = 450;
+
     private FirebaseFirestore db;
 
     public AllianceChatRepository() {
@@ -35,6 +46,21 @@ public class AllianceChatRepository {
         void onError(Exception e);
     }
 
+    public interface OnMessagesPageLoadListener {
+        void onSuccess(MessagePage page);
+        void onError(Exception e);
+    }
+
+    public static class MessagePage {
+        public final List<AllianceMessage> messages;
+        public final boolean hasMore;
+
+        MessagePage(List<AllianceMessage> messages, boolean hasMore) {
+            this.messages = messages;
+            this.hasMore = hasMore;
+        }
+    }
+
     // Send message
     public void sendMessage(AllianceMessage message, OnMessageSendListener listener) {
         db.collection(COLLECTION_MESSAGES)
@@ -64,12 +90,14 @@ public class AllianceChatRepository {
                     if (doc.exists()) {
                         List<String> memberIds = (List<String>) doc.get("memberIds");
                         if (memberIds != null) {
+                            List<String> recipients = new ArrayList<>();
                             for (String memberId : memberIds) {
                                 // Don't send notification to sender
                                 if (!memberId.equals(message.getSenderId())) {
-                                    sendNotification(memberId, message);
+                                    recipients.add(memberId);
                                 }
                             }
+                            fanOutNotifications(recipients, message);
                         }
                     }
                 })
@@ -78,28 +106,48 @@ public class AllianceChatRepository {
                 });
     }
 
-    private void sendNotification(String userId, AllianceMessage message) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", "alliance_message");
-        notification.put("userId", userId);
-        notification.put("allianceId", message.getAllianceId());
-        notification.put("senderUsername", message.getSenderUsername());
-        notification.put("messageText", message.getMessageText());
-        notification.put("message", message.getSenderUsername() + ": " +
+    /**
+     * Svaki primalac ima jednu notifikaciju po savezu ({allianceId}_chat_{userId}) koja se
+     * prepisuje novom porukom i uvećava unreadCount, umesto novog dokumenta po poruci.
+     * Upisi idu u WriteBatch-eve od najviše MAX_BATCH_WRITES operacija.
+     */
+    private void fanOutNotifications(List<String> recipients, AllianceMessage message) {
+        String preview = message.getSenderUsername() + ": " +
                 (message.getMessageText().length() > 50 ?
                         message.getMessageText().substring(0, 50) + "..." :
-                        message.getMessageText()));
-        notification.put("timestamp", System.currentTimeMillis());
-        notification.put("read", false);
-
-        db.collection(COLLECTION_NOTIFICATIONS)
-                .add(notification)
-                .addOnSuccessListener(ref -> {
-                    Log.d(TAG, "Message notification sent to user: " + userId);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error sending message notification", e);
-                });
+                        message.getMessageText());
+
+        for (int start = 0; start < recipients.size(); start += MAX_BATCH_WRITES) {
+            List<String> chunk = recipients.subList(start, Math.min(start + MAX_BATCH_WRITES, recipients.size()));
+            WriteBatch batch = db.batch();
+
+            for (String userId : chunk) {
+                Map<String, Object> notification = new HashMap<>();
+                notification.put("type", "alliance_message");
+                notification.put("userId", userId);
+                notification.put("allianceId", message.getAllianceId());
+                notification.put("senderUsername", message.getSenderUsername());
+                notification.put("messageText", message.getMessageText());
+                notification.put("message", preview);
+                notification.put("unreadCount", FieldValue.increment(1));
+                notification.put("timestamp", System.currentTimeMillis());
+
+                batch.set(getChatNotificationRef(message.getAllianceId(), userId), notification, SetOptions.merge());
+            }
+
+            batch.commit()
+                    .addOnSuccessListener(aVoid -> {
+                        Log.d(TAG, "Message notifications sent to " + chunk.size() + " members");
+                    })
+                    .addOnFailureListener(e -> {
+                        Log.e(TAG, "Error sending message notifications", e);
+                    });
+        }
+    }
+
+    private DocumentReference getChatNotificationRef(String allianceId, String userId) {
+        return db.collection(COLLECTION_NOTIFICATIONS)
+                .document(NotificationRepository.chatNotificationId(allianceId, userId));
     }
 
     // Load messages for alliance (one-time load)
@@ -138,4 +186,60 @@ public class AllianceChatRepository {
                 .orderBy("timestamp", Query.Direction.ASCENDING)
                 .addSnapshotListener(eventListener);
     }
-}
\ No newline at end of file
+
+    /**
+     * Real-time listener za poruke posle afterMessage (najnovija poruka iz lokalnog keša),
+     * ograničen na poslednjih windowSize poruka. Kursor je (timestamp, id dokumenta), kao
+     * u loadOlderMessages, pa se ne preskače poruka sa istim timestamp-om kao granica.
+     * Bez keša (afterMessage == null) listener prati poslednjih windowSize poruka.
+     */
+    public ListenerRegistration listenToNewMessages(String allianceId, AllianceMessage afterMessage, int windowSize,
+                                                    com.google.firebase.firestore.EventListener<com.google.firebase.firestore.QuerySnapshot> eventListener) {
+        Query query = messagesQuery(allianceId);
+        if (afterMessage != null) {
+            Log.d(TAG, "Starting windowed listener for alliance: " + allianceId
+                    + " after " + afterMessage.getTimestamp() + "/" + afterMessage.getMessageId());
+            query = query.startAfter(afterMessage.getTimestamp(), afterMessage.getMessageId());
+        } else {
+            Log.d(TAG, "Starting windowed listener for alliance: " + allianceId);
+        }
+
+        return query.limitToLast(windowSize)
+                .addSnapshotListener(eventListener);
+    }
+
+    /**
+     * Učitava pageSize poruka pre najstarije učitane, u rastućem redosledu.
+     * Kursor je (timestamp, id dokumenta), pa se poruke sa istim timestamp-om na
+     * granici stranice ne preskaču.
+     */
+    public void loadOlderMessages(String allianceId, long beforeTimestamp, String beforeMessageId, int pageSize,
+                                  OnMessagesPageLoadListener listener) {
+        messagesQuery(allianceId)
+                .endBefore(beforeTimestamp, beforeMessageId)
+                .limitToLast(pageSize)
+                .get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<AllianceMessage> messages = new ArrayList<>();
+                    for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
+                        AllianceMessage msg = doc.toObject(AllianceMessage.class);
+                        if (msg != null) {
+                            messages.add(msg);
+                        }
+                    }
+                    Log.d(TAG, "Older messages loaded. Count: " + messages.size());
+                    listener.onSuccess(new MessagePage(messages, querySnapshot.size() >= pageSize));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error loading older messages: " + e.getMessage(), e);
+                    listener.onError(e);
+                });
+    }
+
+    private Query messagesQuery(String allianceId) {
+        return db.collection(COLLECTION_MESSAGES)
+                .whereEqualTo("allianceId", allianceId)
+                .orderBy("timestamp", Query.Direction.ASCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.ASCENDING);
+    }
+}
@@ -6,10 +6,16 @@ import com.example.bossapp.data.model.Alliance;
 import com.example.bossapp.data.model.AllianceInvitation;
 import com.example.bossapp.data.model.MemberProgress;
 import com.example.bossapp.data.model.User;
+import com.google.android.gms.tasks.Task;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
 import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
@@ -23,11 +29,15 @@ public class AllianceRepository {
     private static final String COLLECTION_ALLIANCE_INVITATIONS = "allianceInvitations";
     private static final String COLLECTION_USERS = "users";
     private static final String COLLECTION_NOTIFICATIONS = "notifications";
+    private static final String COLLECTION_SPECIAL_MISSIONS = "specialMissions";
+    private static final String SUBCOLLECTION_MEMBER_PROGRESS = "memberProgress";
 
     private FirebaseFirestore db;
+    private BulkUserLoader bulkUserLoader;
 
     public AllianceRepository() {
         db = FirebaseFirestore.getInstance();
+        bulkUserLoader = new BulkUserLoader();
     }
 
     // ===== INTERFACES =====
@@ -168,59 +178,58 @@ public class AllianceRepository {
     }
 
     // ===== GET PENDING INVITATIONS =====
-    public void getPendingInvitations(String userId, OnInvitationsLoadListener listener) {
-        db.collection(COLLECTION_ALLIANCE_INVITATIONS)
-                .whereEqualTo("receiverId", userId)
-                .whereEqualTo("status", "pending")
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    List<AllianceInvitation> validInvitations = new ArrayList<>();
-                    List<String> invalidInvitationIds = new ArrayList<>();
+    public ListenerRegistration listenToPendingInvitations(String userId, EventListener<QuerySnapshot> listener) {
+        return RealtimeHub.getInstance().subscribe("allianceInvitations/pending/" + userId,
+                db.collection(COLLECTION_ALLIANCE_INVITATIONS)
+                        .whereEqualTo("receiverId", userId)
+                        .whereEqualTo("status", "pending"),
+                listener);
+    }
 
-                    if (querySnapshot.isEmpty()) {
-                        listener.onSuccess(validInvitations);
-                        return;
-                    }
+    // Pozivnice iz listenToPendingInvitations čiji savez još postoji; ostale se brišu
+    public void loadValidInvitations(List<DocumentSnapshot> invitationDocs, OnInvitationsLoadListener listener) {
+        List<AllianceInvitation> validInvitations = new ArrayList<>();
+        List<String> invalidInvitationIds = new ArrayList<>();
 
-                    int[] totalInvitations = {querySnapshot.size()};
-                    int[] processedInvitations = {0};
+        if (invitationDocs.isEmpty()) {
+            listener.onSuccess(validInvitations);
+            return;
+        }
 
-                    for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                        AllianceInvitation invitation = doc.toObject(AllianceInvitation.class);
-                        if (invitation != null) {
-                            db.collection(COLLECTION_ALLIANCES)
-                                    .document(invitation.getAllianceId())
-                                    .get()
-                                    .addOnSuccessListener(allianceDoc -> {
-                                        if (allianceDoc.exists()) {
-                                            validInvitations.add(invitation);
-                                        } else {
-                                            invalidInvitationIds.add(invitation.getInvitationId());
-                                        }
+        int[] totalInvitations = {invitationDocs.size()};
+        int[] processedInvitations = {0};
+
+        for (DocumentSnapshot doc : invitationDocs) {
+            AllianceInvitation invitation = doc.toObject(AllianceInvitation.class);
+            if (invitation != null) {
+                db.collection(COLLECTION_ALLIANCES)
+                        .document(invitation.getAllianceId())
+                        .get()
+                        .addOnSuccessListener(allianceDoc -> {
+                            if (allianceDoc.exists()) {
+                                validInvitations.add(invitation);
+                            } else {
+                                invalidInvitationIds.add(invitation.getInvitationId());
+                            }
 
-                                        processedInvitations[0]++;
-                                        if (processedInvitations[0] == totalInvitations[0]) {
-                                            deleteInvalidInvitations(invalidInvitationIds);
-                                            validInvitations.sort((i1, i2) ->
-                                                    Long.compare(i2.getTimestamp(), i1.getTimestamp()));
-                                            listener.onSuccess(validInvitations);
-                                        }
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        processedInvitations[0]++;
-                                        if (processedInvitations[0] == totalInvitations[0]) {
-                                            validInvitations.sort((i1, i2) ->
-                                                    Long.compare(i2.getTimestamp(), i1.getTimestamp()));
-                                            listener.onSuccess(validInvitations);
-                                        }
-                                    });
-                        }
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading invitations", e);
-                    listener.onError(e);
-                });
+                            processedInvitations[0]++;
+                            if (processedInvitations[0] == totalInvitations[0]) {
+                                deleteInvalidInvitations(invalidInvitationIds);
+                                validInvitations.sort((i1, i2) ->
+                                        Long.compare(i2.getTimestamp(), i1.getTimestamp()));
+                                listener.onSuccess(validInvitations);
+                            }
+                        })
+                        .addOnFailureListener(e -> {
+                            processedInvitations[0]++;
+                            if (processedInvitations[0] == totalInvitations[0]) {
+                                validInvitations.sort((i1, i2) ->
+                                        Long.compare(i2.getTimestamp(), i1.getTimestamp()));
+                                listener.onSuccess(validInvitations);
+                            }
+                        });
+            }
+        }
     }
 
     private void deleteInvalidInvitations(List<String> invitationIds) {
@@ -325,7 +334,7 @@ public class AllianceRepository {
 
                     // Send notification to alliance leader
                     sendAcceptanceNotification(invitation.getSenderId(), userId,
-                            invitation.getAllianceName());
+                            invitation.getAllianceId(), invitation.getAllianceName());
 
                     listener.onSuccess();
                 })
@@ -336,7 +345,7 @@ public class AllianceRepository {
     }
 
     private void sendAcceptanceNotification(String leaderId, String acceptedUserId,
-                                            String allianceName) {
+                                            String allianceId, String allianceName) {
         Log.d(TAG, "Sending acceptance notification to leader: " + leaderId);
 
         db.collection(COLLECTION_USERS)
@@ -351,12 +360,12 @@ public class AllianceRepository {
                             Map<String, Object> notificationData = new HashMap<>();
                             notificationData.put("type", "alliance_accepted");
                             notificationData.put("userId", leaderId);
+                            notificationData.put("allianceId", allianceId);
                             notificationData.put("acceptedUsername", acceptedUser.getUsername());
                             notificationData.put("allianceName", allianceName);
                             notificationData.put("message", acceptedUser.getUsername() +
                                     " accepted your invitation to " + allianceName);
                             notificationData.put("timestamp", System.currentTimeMillis());
-                            notificationData.put("read", false);
 
                             db.collection(COLLECTION_NOTIFICATIONS)
                                     .add(notificationData)
@@ -395,6 +404,7 @@ public class AllianceRepository {
                             // Send notification to leader
                             sendDeclineNotification(invitation.getSenderId(),
                                     invitation.getReceiverId(),
+                                    invitation.getAllianceId(),
                                     invitation.getAllianceName());
 
                             // Delete invitation
@@ -420,7 +430,7 @@ public class AllianceRepository {
     }
 
     private void sendDeclineNotification(String leaderId, String declinedUserId,
-                                         String allianceName) {
+                                         String allianceId, String allianceName) {
         Log.d(TAG, "Sending decline notification to leader: " + leaderId);
 
         db.collection(COLLECTION_USERS)
@@ -435,12 +445,12 @@ public class AllianceRepository {
                             Map<String, Object> notificationData = new HashMap<>();
                             notificationData.put("type", "alliance_declined");
                             notificationData.put("userId", leaderId);
+                            notificationData.put("allianceId", allianceId);
                             notificationData.put("declinedUsername", declinedUser.getUsername());
                             notificationData.put("allianceName", allianceName);
                             notificationData.put("message", declinedUser.getUsername() +
                                     " declined your invitation to " + allianceName);
                             notificationData.put("timestamp", System.currentTimeMillis());
-                            notificationData.put("read", false);
 
                             db.collection(COLLECTION_NOTIFICATIONS)
                                     .add(notificationData)
@@ -553,28 +563,18 @@ public class AllianceRepository {
     }
 
     public void getAllianceMembers(List<String> memberIds, UserRepository.OnUsersLoadListener listener) {
-        if (memberIds == null || memberIds.isEmpty()) {
-            listener.onSuccess(new ArrayList<>());
-            return;
-        }
+        bulkUserLoader.loadUsers(memberIds, new UserRepository.OnUsersLoadListener() {
+            @Override
+            public void onSuccess(List<User> members) {
+                listener.onSuccess(members);
+            }
 
-        db.collection(COLLECTION_USERS)
-                .whereIn("userId", memberIds)
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    List<User> members = new ArrayList<>();
-                    for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                        User user = doc.toObject(User.class);
-                        if (user != null) {
-                            members.add(user);
-                        }
-                    }
-                    listener.onSuccess(members);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading alliance members", e);
-                    listener.onError(e);
-                });
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error loading alliance members", e);
+                listener.onError(e);
+            }
+        });
     }
 
     public void startSpecialMission(String allianceId, OnAllianceActionListener listener) {
@@ -598,7 +598,7 @@ public class AllianceRepository {
                         return;
                     }
 
-                    String missionId = db.collection("specialMissions").document().getId();
+                    String missionId = db.collection(COLLECTION_SPECIAL_MISSIONS).document().getId();
                     long startTime = System.currentTimeMillis();
                     long endTime = startTime + 14L * 24 * 60 * 60 * 1000;
 
@@ -613,17 +613,16 @@ public class AllianceRepository {
                     missionData.put("endTime", endTime);
                     missionData.put("status", "active");
 
-                    // inicijalizacija napretka po članovima
-                    Map<String, Object> progress = new HashMap<>();
+                    WriteBatch batch = db.batch();
+                    batch.set(db.collection(COLLECTION_SPECIAL_MISSIONS).document(missionId), missionData);
+
+                    // inicijalizacija napretka po članovima - svaki član ima svoj dokument
                     for (String memberId : alliance.getMemberIds()) {
                         Map<String, Object> userProgress = new HashMap<>();
+                        userProgress.put("userId", memberId);
                         userProgress.put("regularBossHits", 0);
-                        progress.put(memberId, userProgress);
+                        batch.set(getMemberProgressRef(missionId, memberId), userProgress);
                     }
-                    missionData.put("progress", progress);
-
-                    WriteBatch batch = db.batch();
-                    batch.set(db.collection("specialMissions").document(missionId), missionData);
                     batch.update(db.collection(COLLECTION_ALLIANCES).document(allianceId),
                             "currentMissionId", missionId);
 
@@ -635,32 +634,54 @@ public class AllianceRepository {
                 .addOnFailureListener(listener::onError);
     }
 
-    public void recordMemberProgress(String missionId, String userId, int damage, OnMissionUpdateListener listener) {
-        DocumentReference missionRef = db.collection("specialMissions").document(missionId);
-
-        db.runTransaction(transaction -> {
-                    DocumentSnapshot snapshot = transaction.get(missionRef);
-                    if (!snapshot.exists()) throw new RuntimeException("Mission not found");
-
-                    Map<String, Object> progress = (Map<String, Object>) snapshot.get("progress");
-                    if (progress == null) progress = new HashMap<>();
-
-                    Map<String, Object> userProgress = (Map<String, Object>) progress.get(userId);
-                    if (userProgress == null) userProgress = new HashMap<>();
+    private DocumentReference getMemberProgressRef(String missionId, String userId) {
+        return db.collection(COLLECTION_SPECIAL_MISSIONS)
+                .document(missionId)
+                .collection(SUBCOLLECTION_MEMBER_PROGRESS)
+                .document(userId);
+    }
 
-                    int currentDamage = userProgress.get("damageDealt") != null ? ((Long) userProgress.get("damageDealt")).intValue() : 0;
-                    userProgress.put("damageDealt", currentDamage + damage);
+    /**
+     * Napredak se upisuje u specialMissions/{missionId}/memberProgress/{userId}
+     * preko FieldValue.increment, pa članovi nikad ne pišu u isti dokument
+     * i nema transakcija koje se međusobno poništavaju.
+     */
+    public void recordMemberProgress(String missionId, String userId, int damage, OnMissionUpdateListener listener) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("userId", userId);
+        update.put("damageDealt", FieldValue.increment(damage));
+        update.put("tasksCompleted", FieldValue.increment(1));
 
-                    int tasksCompleted = userProgress.get("tasksCompleted") != null ? ((Long) userProgress.get("tasksCompleted")).intValue() : 0;
-                    userProgress.put("tasksCompleted", tasksCompleted + 1);
+        writeMemberProgress(missionId, userId, update)
+                .addOnSuccessListener(aVoid -> listener.onSuccess())
+                .addOnFailureListener(e -> listener.onError(e));
+    }
 
-                    progress.put(userId, userProgress);
+    /**
+     * Merge u memberProgress dokument, samo dok misija postoji i traje. Transakcija čita
+     * samo dokument misije (koji se tokom misije ne menja), pa upisi članova ne kolidiraju.
+     */
+    private Task<Void> writeMemberProgress(String missionId, String userId, Map<String, Object> update) {
+        DocumentReference missionRef = db.collection(COLLECTION_SPECIAL_MISSIONS).document(missionId);
+
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot mission = transaction.get(missionRef);
+            if (!mission.exists()) {
+                throw new FirebaseFirestoreException("Mission not found",
+                        FirebaseFirestoreException.Code.NOT_FOUND);
+            }
 
-                    transaction.update(missionRef, "progress", progress);
+            Long endTime = mission.getLong("endTime");
+            String status = mission.getString("status");
+            if ((status != null && !"active".equals(status))
+                    || (endTime != null && endTime < System.currentTimeMillis())) {
+                throw new FirebaseFirestoreException("Mission has ended",
+                        FirebaseFirestoreException.Code.INVALID_ARGUMENT);
+            }
 
-                    return null;
-                }).addOnSuccessListener(aVoid -> listener.onSuccess())
-                .addOnFailureListener(e -> listener.onError(e));
+            transaction.set(getMemberProgressRef(missionId, userId), update, SetOptions.merge());
+            return null;
+        });
     }
 
     public interface OnMissionUpdateListener {
@@ -668,65 +689,26 @@ public class AllianceRepository {
         void onError(Exception e);
     }
 
-    public interface OnMissionProgressListener {
-        void onProgress(Map<String, Map<String, Object>> membersProgress, int totalDamage, int bossHp);
-        void onError(Exception e);
+    public ListenerRegistration listenToMission(String missionId, EventListener<DocumentSnapshot> listener) {
+        return db.collection(COLLECTION_SPECIAL_MISSIONS)
+                .document(missionId)
+                .addSnapshotListener(listener);
     }
 
-    public void getMissionProgress(String missionId, OnMissionProgressListener listener) {
-        db.collection("specialMissions").document(missionId)
-                .get()
-                .addOnSuccessListener(doc -> {
-                    if (!doc.exists()) {
-                        listener.onError(new Exception("Mission not found"));
-                        return;
-                    }
-
-                    Map<String, Object> rawProgress = (Map<String, Object>) doc.get("progress");
-                    Map<String, Map<String, Object>> membersProgress = new HashMap<>();
-                    int totalDamage = 0;
-
-                    int bossHp = doc.get("bossHp") != null ? ((Long) doc.get("bossHp")).intValue() : 0;
-
-                    if (rawProgress != null) {
-                        for (Map.Entry<String, Object> entry : rawProgress.entrySet()) {
-                            String userId = entry.getKey();
-                            Map<String, Object> userProgress = (Map<String, Object>) entry.getValue();
-
-                            int damage = userProgress.get("damageDealt") != null ? ((Long) userProgress.get("damageDealt")).intValue() : 0;
-                            totalDamage += damage;
-
-                            membersProgress.put(userId, userProgress);
-                        }
-                    }
-
-                    listener.onProgress(membersProgress, totalDamage, bossHp);
-                })
-                .addOnFailureListener(listener::onError);
+    public ListenerRegistration listenToMemberProgress(String missionId, EventListener<QuerySnapshot> listener) {
+        return db.collection(COLLECTION_SPECIAL_MISSIONS)
+                .document(missionId)
+                .collection(SUBCOLLECTION_MEMBER_PROGRESS)
+                .addSnapshotListener(listener);
     }
 
-
     public void recordSpecialMissionProgressIncrement(String missionId, String userId, String field, int increment) {
-        DocumentReference missionRef = db.collection("specialMissions").document(missionId);
-
-        db.runTransaction(transaction -> {
-                    DocumentSnapshot snapshot = transaction.get(missionRef);
-                    if (!snapshot.exists()) throw new RuntimeException("Mission not found");
-
-                    Map<String, Object> membersProgress = (Map<String, Object>) snapshot.get("progress");
-                    if (membersProgress == null) membersProgress = new HashMap<>();
-
-                    Map<String, Object> userProgress = (Map<String, Object>) membersProgress.get(userId);
-                    if (userProgress == null) userProgress = new HashMap<>();
-
-                    long currentValue = userProgress.get(field) != null ? ((Long) userProgress.get(field)) : 0;
-                    userProgress.put(field, currentValue + increment);
-
-                    membersProgress.put(userId, userProgress);
-                    transaction.update(missionRef, "progress", membersProgress);
+        Map<String, Object> update = new HashMap<>();
+        update.put("userId", userId);
+        update.put(field, FieldValue.increment(increment));
 
-                    return null;
-                }).addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Progress updated"))
+        writeMemberProgress(missionId, userId, update)
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Progress updated"))
                 .addOnFailureListener(e -> Log.e(TAG, "❌ Error updating progress: " + e.getMessage()));
     }
 
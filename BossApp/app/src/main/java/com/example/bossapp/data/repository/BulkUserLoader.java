@@ -0,0 +1,97 @@
+package com.example.bossapp.data.repository;
+
+import android.util.Log;
+
+import com.example.bossapp.data.model.User;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Učitava više korisnika po ID-jevima.
+ *
+ * Lista se deli na delove od najviše WHERE_IN_LIMIT ID-jeva (ograničenje whereIn upita),
+ * svi delovi se šalju istovremeno, a rezultat se vraća u redosledu ulaznih ID-jeva.
+ * Korisnici koji su već u UserCache se ne učitavaju ponovo.
+ */
+public class BulkUserLoader {
+    private static final String TAG = "BulkUserLoader";
+    private static final String COLLECTION_USERS = "users";
+
+    private static final int WHERE_IN_LIMIT = 30;
+
+    private final FirebaseFirestore db;
+
+    public BulkUserLoader() {
+        db = FirebaseFirestore.getInstance();
+    }
+
+    public void loadUsers(List<String> userIds, UserRepository.OnUsersLoadListener listener) {
+        if (userIds == null || userIds.isEmpty()) {
+            listener.onSuccess(new ArrayList<>());
+            return;
+        }
+
+        Map<String, User> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            User cached = UserCache.getInstance().peek(userId);
+            if (cached != null) {
+                found.put(userId, cached);
+            } else {
+                missing.add(userId);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            listener.onSuccess(inOrder(userIds, found));
+            return;
+        }
+
+        List<Task<QuerySnapshot>> chunks = new ArrayList<>();
+        for (int start = 0; start < missing.size(); start += WHERE_IN_LIMIT) {
+            List<String> chunk = missing.subList(start, Math.min(start + WHERE_IN_LIMIT, missing.size()));
+            chunks.add(db.collection(COLLECTION_USERS)
+                    .whereIn("userId", new ArrayList<>(chunk))
+                    .get());
+        }
+
+        Tasks.whenAllSuccess(chunks)
+                .addOnSuccessListener(results -> {
+                    for (Object result : results) {
+                        for (DocumentSnapshot doc : ((QuerySnapshot) result).getDocuments()) {
+                            User user = doc.toObject(User.class);
+                            if (user != null && user.getUserId() != null) {
+                                found.put(user.getUserId(), user);
+                                UserCache.getInstance().put(user);
+                            }
+                        }
+                    }
+                    Log.d(TAG, "Loaded " + missing.size() + " users in " + chunks.size() + " queries");
+                    listener.onSuccess(inOrder(userIds, found));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error loading users", e);
+                    listener.onError(e);
+                });
+    }
+
+    private static List<User> inOrder(List<String> userIds, Map<String, User> found) {
+        List<User> users = new ArrayList<>();
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            User user = found.get(userId);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+}
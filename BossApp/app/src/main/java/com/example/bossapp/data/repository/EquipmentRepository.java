@@ -3,6 +3,9 @@ package com.example.bossapp.data.repository;
 import android.util.Log;
 
 import com.example.bossapp.data.model.Equipment;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
@@ -13,6 +16,7 @@ public class EquipmentRepository {
 
     private static final String TAG = "EquipmentRepository";
     private static final String COLLECTION = "equipment";
+    private static final String COLLECTION_USERS = "users";
     private final FirebaseFirestore db;
 
     public EquipmentRepository() {
@@ -43,6 +47,39 @@ public class EquipmentRepository {
                 });
     }
 
+    /**
+     * Kupovina u jednoj transakciji: provera i skidanje novčića i upis opreme.
+     * Za privremene napitke se povećava quantity postojećeg dokumenta umesto novog.
+     */
+    public void purchaseEquipment(Equipment equipment, int price, OnEquipmentListener listener) {
+        DocumentReference userRef = db.collection(COLLECTION_USERS).document(equipment.getUserId());
+        DocumentReference equipmentRef = db.collection(COLLECTION).document(equipment.getEquipmentId());
+        boolean stackable = equipment.canStack();
+
+        db.runTransaction(transaction -> {
+                    // Sva čitanja moraju biti pre upisa
+                    DocumentSnapshot userDoc = transaction.get(userRef);
+                    DocumentSnapshot existing = stackable ? transaction.get(equipmentRef) : null;
+
+                    UserLedger.applyGuarded(transaction, userDoc, new UserLedger.Delta().coins(-price));
+
+                    if (existing != null && existing.exists()) {
+                        transaction.update(equipmentRef, "quantity", FieldValue.increment(1));
+                    } else {
+                        transaction.set(equipmentRef, equipment.toMap());
+                    }
+                    return null;
+                })
+                .addOnSuccessListener(unused -> {
+                    Log.d(TAG, "Equipment purchased: " + equipment.getDisplayName());
+                    listener.onSuccess();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error purchasing equipment", e);
+                    listener.onError(e.getMessage());
+                });
+    }
+
     public void getUserEquipment(String userId, OnEquipmentListListener listener) {
         db.collection(COLLECTION)
                 .whereEqualTo("userId", userId)
@@ -76,6 +113,25 @@ public class EquipmentRepository {
                 });
     }
 
+    /**
+     * Menja samo isActive. Privremeni napitci dele jedan dokument čiji quantity menjaju
+     * kupovina i applyFightEnd, pa bi upis cele opreme iz memorije vratio staru količinu.
+     * Ako je dokument u međuvremenu obrisan, update ne uspeva umesto da ga vrati.
+     */
+    public void setEquipmentActive(String equipmentId, boolean active, OnEquipmentListener listener) {
+        db.collection(COLLECTION)
+                .document(equipmentId)
+                .update("isActive", active)
+                .addOnSuccessListener(unused -> {
+                    Log.d(TAG, "Equipment " + equipmentId + " active: " + active);
+                    listener.onSuccess();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error updating equipment", e);
+                    listener.onError(e.getMessage());
+                });
+    }
+
     public void deleteEquipment(String equipmentId, OnEquipmentListener listener) {
         db.collection(COLLECTION)
                 .document(equipmentId)
@@ -91,6 +147,63 @@ public class EquipmentRepository {
     }
 
 
+    /**
+     * Sve promene opreme posle borbe u jednoj transakciji: smanjeno trajanje,
+     * deaktivacija, potrošen napitak iz gomile i brisanje isteklih.
+     *
+     * Za gomilu se količina čita u transakciji, a ne iz stanja pre borbe: ako je
+     * tokom borbe kupljen još jedan napitak, gomila se smanjuje umesto da se obriše.
+     */
+    public void applyFightEnd(List<Equipment> updated, List<Equipment> stacksUsed, List<String> deletedIds,
+                              OnEquipmentListener listener) {
+        if (updated.isEmpty() && stacksUsed.isEmpty() && deletedIds.isEmpty()) {
+            Log.d(TAG, "No equipment changes after fight");
+            listener.onSuccess();
+            return;
+        }
+
+        db.runTransaction(transaction -> {
+                    // Sva čitanja moraju biti pre upisa
+                    List<DocumentSnapshot> stackDocs = new ArrayList<>();
+                    for (Equipment equipment : stacksUsed) {
+                        stackDocs.add(transaction.get(db.collection(COLLECTION).document(equipment.getEquipmentId())));
+                    }
+
+                    for (Equipment equipment : updated) {
+                        transaction.update(db.collection(COLLECTION).document(equipment.getEquipmentId()),
+                                "remainingDuration", equipment.getRemainingDuration(),
+                                "isActive", equipment.getIsActive());
+                    }
+                    for (int i = 0; i < stacksUsed.size(); i++) {
+                        DocumentSnapshot stackDoc = stackDocs.get(i);
+                        if (!stackDoc.exists()) continue;
+
+                        Long quantity = stackDoc.getLong("quantity");
+                        if (quantity == null || quantity <= 1) {
+                            transaction.delete(stackDoc.getReference());
+                        } else {
+                            transaction.update(stackDoc.getReference(),
+                                    "quantity", quantity - 1,
+                                    "remainingDuration", stacksUsed.get(i).getRemainingDuration(),
+                                    "isActive", false);
+                        }
+                    }
+                    for (String equipmentId : deletedIds) {
+                        transaction.delete(db.collection(COLLECTION).document(equipmentId));
+                    }
+                    return null;
+                })
+                .addOnSuccessListener(unused -> {
+                    Log.d(TAG, "Fight end applied: " + updated.size() + " updated, "
+                            + stacksUsed.size() + " stacks used, " + deletedIds.size() + " deleted");
+                    listener.onSuccess();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error applying fight end", e);
+                    listener.onError(e.getMessage());
+                });
+    }
+
     public void getActiveEquipment(String userId, OnEquipmentListListener listener) {
         db.collection(COLLECTION)
                 .whereEqualTo("userId", userId)
@@ -4,25 +4,37 @@ import android.util.Log;
 
 import com.example.bossapp.data.model.FriendRequest;
 import com.example.bossapp.data.model.User;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.WriteBatch;
 import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class FriendRepository {
     private static final String TAG = "FriendRepository";
     private static final String COLLECTION_USERS = "users";
     private static final String COLLECTION_FRIEND_REQUESTS = "friendRequests";
 
+    public static final int SEARCH_LIMIT = 20;
+    public static final int USERS_PAGE_SIZE = 20;
+
     public FirebaseFirestore db;
+    private BulkUserLoader bulkUserLoader;
 
     public FriendRepository() {
         db = FirebaseFirestore.getInstance();
+        bulkUserLoader = new BulkUserLoader();
     }
 
     public interface OnFriendRequestListener {
@@ -30,109 +42,84 @@ public class FriendRepository {
         void onError(Exception e);
     }
 
-    public interface OnFriendRequestCheckListener {
-        void onResult(boolean exists, String requestId);
+    public interface OnUsersPageLoadListener {
+        void onSuccess(UsersPage page);
         void onError(Exception e);
     }
 
-    public interface OnFriendRequestsLoadListener {
-        void onSuccess(List<FriendRequest> requests);
-        void onError(Exception e);
+    public static class UsersPage {
+        public final List<User> users;
+        public final DocumentSnapshot lastDocument;
+        public final boolean hasMore;
+
+        UsersPage(List<User> users, DocumentSnapshot lastDocument, boolean hasMore) {
+            this.users = users;
+            this.lastDocument = lastDocument;
+            this.hasMore = hasMore;
+        }
     }
 
+    /**
+     * Zahtev se upisuje u friendRequests/{pairId} u transakciji, pa dva istovremena
+     * slanja (i u suprotnim smerovima) ne mogu napraviti duplikat. Odbijen ili
+     * prihvaćen zahtev za par koji više nisu prijatelji se prepisuje novim.
+     */
     public void sendFriendRequest(String senderId, String receiverId,
                                   String senderUsername, int senderAvatarIndex,
                                   OnFriendRequestListener listener) {
-        checkIfAlreadyFriendsOrRequested(senderId, receiverId, new OnFriendRequestCheckListener() {
-            @Override
-            public void onResult(boolean exists, String requestId) {
-                if (exists) {
-                    listener.onError(new Exception("Friend request already exists or you are already friends"));
-                    return;
-                }
-
-                FriendRequest request = new FriendRequest(senderId, receiverId,
-                        senderUsername, senderAvatarIndex);
-
-                db.collection(COLLECTION_FRIEND_REQUESTS)
-                        .document(request.getRequestId())
-                        .set(request.toMap())
-                        .addOnSuccessListener(aVoid -> {
-                            Log.d(TAG, "Friend request sent successfully");
-                            listener.onSuccess();
-                        })
-                        .addOnFailureListener(e -> {
-                            Log.e(TAG, "Error sending friend request", e);
-                            listener.onError(e);
-                        });
-            }
-
-            @Override
-            public void onError(Exception e) {
-                listener.onError(e);
-            }
-        });
-    }
-
-    private void checkIfAlreadyFriendsOrRequested(String user1Id, String user2Id,
-                                                  OnFriendRequestCheckListener listener) {
-        db.collection(COLLECTION_USERS)
-                .document(user1Id)
-                .get()
-                .addOnSuccessListener(doc -> {
-                    User user = doc.toObject(User.class);
-                    if (user != null && user.isFriend(user2Id)) {
-                        listener.onResult(true, null);
-                        return;
+        FriendRequest request = new FriendRequest(senderId, receiverId,
+                senderUsername, senderAvatarIndex);
+        DocumentReference requestRef = db.collection(COLLECTION_FRIEND_REQUESTS)
+                .document(request.getRequestId());
+        DocumentReference senderRef = db.collection(COLLECTION_USERS).document(senderId);
+
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot requestDoc = transaction.get(requestRef);
+                    DocumentSnapshot senderDoc = transaction.get(senderRef);
+
+                    User sender = senderDoc.toObject(User.class);
+                    if ((sender != null && sender.isFriend(receiverId)) ||
+                            (requestDoc.exists() && "pending".equals(requestDoc.getString("status")))) {
+                        // INVALID_ARGUMENT jer SDK ponavlja transakciju za ALREADY_EXISTS/FAILED_PRECONDITION
+                        throw new FirebaseFirestoreException(
+                                "Friend request already exists or you are already friends",
+                                FirebaseFirestoreException.Code.INVALID_ARGUMENT);
                     }
 
-                    db.collection(COLLECTION_FRIEND_REQUESTS)
-                            .whereEqualTo("senderId", user1Id)
-                            .whereEqualTo("receiverId", user2Id)
-                            .whereEqualTo("status", "pending")
-                            .get()
-                            .addOnSuccessListener(querySnapshot -> {
-                                if (!querySnapshot.isEmpty()) {
-                                    listener.onResult(true, querySnapshot.getDocuments().get(0).getId());
-                                } else {
-                                    db.collection(COLLECTION_FRIEND_REQUESTS)
-                                            .whereEqualTo("senderId", user2Id)
-                                            .whereEqualTo("receiverId", user1Id)
-                                            .whereEqualTo("status", "pending")
-                                            .get()
-                                            .addOnSuccessListener(qs2 -> {
-                                                if (!qs2.isEmpty()) {
-                                                    listener.onResult(true, qs2.getDocuments().get(0).getId());
-                                                } else {
-                                                    listener.onResult(false, null);
-                                                }
-                                            })
-                                            .addOnFailureListener(listener::onError);
-                                }
-                            })
-                            .addOnFailureListener(listener::onError);
+                    transaction.set(requestRef, request.toMap());
+                    return null;
+                })
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Friend request sent successfully");
+                    listener.onSuccess();
                 })
-                .addOnFailureListener(listener::onError);
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error sending friend request", e);
+                    listener.onError(e);
+                });
     }
 
     public void acceptFriendRequest(String requestId, String senderId, String receiverId,
                                     OnFriendRequestListener listener) {
-        // Use a batch write to ensure atomicity
-        WriteBatch batch = db.batch();
-
-        // Update request status
-        batch.update(db.collection(COLLECTION_FRIEND_REQUESTS).document(requestId),
-                "status", "accepted");
-
-        // Add to both users' friend lists
-        batch.update(db.collection(COLLECTION_USERS).document(senderId),
-                "friendIds", FieldValue.arrayUnion(receiverId));
+        DocumentReference requestRef = db.collection(COLLECTION_FRIEND_REQUESTS).document(requestId);
+
+        // Transakcija da se isti zahtev ne prihvati dva puta
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot requestDoc = transaction.get(requestRef);
+                    if (!requestDoc.exists() || !"pending".equals(requestDoc.getString("status"))) {
+                        throw new FirebaseFirestoreException("Friend request is no longer pending",
+                                FirebaseFirestoreException.Code.INVALID_ARGUMENT);
+                    }
 
-        batch.update(db.collection(COLLECTION_USERS).document(receiverId),
-                "friendIds", FieldValue.arrayUnion(senderId));
+                    transaction.update(requestRef, "status", "accepted");
 
-        // Commit the batch
-        batch.commit()
+                    // Add to both users' friend lists
+                    transaction.update(db.collection(COLLECTION_USERS).document(senderId),
+                            "friendIds", FieldValue.arrayUnion(receiverId));
+                    transaction.update(db.collection(COLLECTION_USERS).document(receiverId),
+                            "friendIds", FieldValue.arrayUnion(senderId));
+                    return null;
+                })
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "Friend request accepted and friends added to both users");
                     listener.onSuccess();
@@ -157,26 +144,17 @@ public class FriendRepository {
                 });
     }
 
-    public void getPendingRequests(String userId, OnFriendRequestsLoadListener listener) {
-        db.collection(COLLECTION_FRIEND_REQUESTS)
-                .whereEqualTo("receiverId", userId)
-                .whereEqualTo("status", "pending")
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    List<FriendRequest> requests = new ArrayList<>();
-                    for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                        FriendRequest request = doc.toObject(FriendRequest.class);
-                        if (request != null) {
-                            requests.add(request);
-                        }
-                    }
-                    requests.sort((r1, r2) -> Long.compare(r2.getTimestamp(), r1.getTimestamp()));
-                    listener.onSuccess(requests);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading friend requests", e);
-                    listener.onError(e);
-                });
+    // Zahtevi iz listenToFriendRequests, najnoviji prvi
+    public static List<FriendRequest> toFriendRequests(List<DocumentSnapshot> requestDocs) {
+        List<FriendRequest> requests = new ArrayList<>();
+        for (DocumentSnapshot doc : requestDocs) {
+            FriendRequest request = doc.toObject(FriendRequest.class);
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        requests.sort((r1, r2) -> Long.compare(r2.getTimestamp(), r1.getTimestamp()));
+        return requests;
     }
 
     public void removeFriend(String userId, String friendId, OnFriendRequestListener listener) {
@@ -287,23 +265,18 @@ public class FriendRepository {
                         return;
                     }
 
-                    db.collection(COLLECTION_USERS)
-                            .whereIn("userId", user.getFriendIds())
-                            .get()
-                            .addOnSuccessListener(querySnapshot -> {
-                                List<User> friends = new ArrayList<>();
-                                for (DocumentSnapshot friendDoc : querySnapshot.getDocuments()) {
-                                    User friend = friendDoc.toObject(User.class);
-                                    if (friend != null) {
-                                        friends.add(friend);
-                                    }
-                                }
-                                listener.onSuccess(friends);
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "Error loading friends", e);
-                                listener.onError(e);
-                            });
+                    bulkUserLoader.loadUsers(user.getFriendIds(), new UserRepository.OnUsersLoadListener() {
+                        @Override
+                        public void onSuccess(List<User> friends) {
+                            listener.onSuccess(friends);
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            Log.e(TAG, "Error loading friends", e);
+                            listener.onError(e);
+                        }
+                    });
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Error loading user", e);
@@ -311,23 +284,51 @@ public class FriendRepository {
                 });
     }
 
+    /**
+     * Pretraga po prefiksu usernameLower polja, bez obzira na velika/mala slova.
+     * Rezultati se pamte u UserSearchCache, pa dopisivanje slova često ne ide na server.
+     *
+     * usernameLower se upisuje tek kada se vlasnik naloga ponovo prijavi, pa se za
+     * nepotpune rezultate radi i stara pretraga po username-u (osetljiva na velika
+     * slova), da neaktivni nalozi ostanu pronalazivi.
+     */
     public void searchUsersByUsername(String query, String currentUserId,
                                       UserRepository.OnUsersLoadListener listener) {
-        db.collection(COLLECTION_USERS)
-                .orderBy("username")
-                .startAt(query)
-                .endAt(query + "\uf8ff")
-                .limit(20)
-                .get()
+        String prefix = query.trim().toLowerCase(Locale.ROOT);
+        if (prefix.isEmpty()) {
+            listener.onSuccess(new ArrayList<>());
+            return;
+        }
+
+        List<User> cached = UserSearchCache.getInstance().lookup(prefix);
+        if (cached != null) {
+            listener.onSuccess(withoutUser(cached, currentUserId));
+            return;
+        }
+
+        searchByPrefix("usernameLower", prefix)
                 .addOnSuccessListener(querySnapshot -> {
-                    List<User> users = new ArrayList<>();
-                    for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                        User user = doc.toObject(User.class);
-                        if (user != null && !user.getUserId().equals(currentUserId)) {
-                            users.add(user);
-                        }
+                    Map<String, User> users = new LinkedHashMap<>();
+                    addUsers(users, querySnapshot);
+                    if (querySnapshot.size() >= SEARCH_LIMIT) {
+                        List<User> results = new ArrayList<>(users.values());
+                        UserSearchCache.getInstance().put(prefix, results, false);
+                        listener.onSuccess(withoutUser(results, currentUserId));
+                        return;
                     }
-                    listener.onSuccess(users);
+
+                    searchByPrefix("username", query.trim())
+                            .addOnSuccessListener(legacySnapshot -> {
+                                addUsers(users, legacySnapshot);
+                                List<User> results = new ArrayList<>(users.values());
+                                UserSearchCache.getInstance().put(prefix, results,
+                                        legacySnapshot.size() < SEARCH_LIMIT);
+                                listener.onSuccess(withoutUser(results, currentUserId));
+                            })
+                            .addOnFailureListener(e -> {
+                                Log.e(TAG, "Error searching users by username", e);
+                                listener.onSuccess(withoutUser(new ArrayList<>(users.values()), currentUserId));
+                            });
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Error searching users", e);
@@ -335,30 +336,70 @@ public class FriendRepository {
                 });
     }
 
-    public void getAllUsers(String currentUserId, UserRepository.OnUsersLoadListener listener) {
-        db.collection(COLLECTION_USERS)
-                .get()
+    private Task<QuerySnapshot> searchByPrefix(String field, String prefix) {
+        return db.collection(COLLECTION_USERS)
+                .orderBy(field)
+                .startAt(prefix)
+                .endAt(prefix + "\uf8ff")
+                .limit(SEARCH_LIMIT)
+                .get();
+    }
+
+    private static void addUsers(Map<String, User> users, QuerySnapshot querySnapshot) {
+        for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
+            User user = doc.toObject(User.class);
+            if (user != null && user.getUserId() != null) {
+                users.put(user.getUserId(), user);
+            }
+        }
+    }
+
+    // Jedna strana korisnika po username-u; sledeća strana počinje posle page.lastDocument
+    public void getUsersPage(String currentUserId, DocumentSnapshot after, int pageSize,
+                             OnUsersPageLoadListener listener) {
+        Query query = db.collection(COLLECTION_USERS)
+                .orderBy("username")
+                .limit(pageSize);
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+
+        query.get()
                 .addOnSuccessListener(querySnapshot -> {
                     List<User> users = new ArrayList<>();
+                    DocumentSnapshot lastDocument = after;
                     for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
+                        lastDocument = doc;
                         User user = doc.toObject(User.class);
-                        if (user != null && !user.getUserId().equals(currentUserId)) {
+                        if (user != null && user.getUserId() != null) {
                             users.add(user);
                         }
                     }
-                    listener.onSuccess(users);
+                    listener.onSuccess(new UsersPage(withoutUser(users, currentUserId), lastDocument,
+                            querySnapshot.size() >= pageSize));
                 })
                 .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading all users", e);
+                    Log.e(TAG, "Error loading users page", e);
                     listener.onError(e);
                 });
     }
 
+    private static List<User> withoutUser(List<User> users, String userId) {
+        List<User> result = new ArrayList<>();
+        for (User user : users) {
+            if (!user.getUserId().equals(userId)) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
     public ListenerRegistration listenToFriendRequests(String userId,
                                                        com.google.firebase.firestore.EventListener<QuerySnapshot> listener) {
-        return db.collection(COLLECTION_FRIEND_REQUESTS)
-                .whereEqualTo("receiverId", userId)
-                .whereEqualTo("status", "pending")
-                .addSnapshotListener(listener);
+        return RealtimeHub.getInstance().subscribe("friendRequests/pending/" + userId,
+                db.collection(COLLECTION_FRIEND_REQUESTS)
+                        .whereEqualTo("receiverId", userId)
+                        .whereEqualTo("status", "pending"),
+                listener);
     }
 }
\ No newline at end of file
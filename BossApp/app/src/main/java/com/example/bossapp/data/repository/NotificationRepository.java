@@ -0,0 +1,230 @@
+package com.example.bossapp.data.repository;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pročitanost notifikacija se čuva u notificationReadCursors/{userId}: kursor allRead
+ * (sve do tog timestamp-a je pročitano) i mapa read sa timestamp-om do kog je pročitana
+ * svaka pojedinačna notifikacija. Zbirna chat notifikacija menja timestamp novom porukom,
+ * pa je ponovo nepročitana. allRead se pomera automatski do najstarije nepročitane
+ * notifikacije i ograničava upit, a unosi u read stariji od allRead se brišu.
+ * Stare notifikacije sa poljem read == true se i dalje smatraju pročitanim.
+ */
+public class NotificationRepository {
+    private static final String TAG = "NotificationRepository";
+    private static final String COLLECTION_NOTIFICATIONS = "notifications";
+    private static final String COLLECTION_READ_CURSORS = "notificationReadCursors";
+
+    private static final String FIELD_ALL_READ = "allRead";
+    private static final String FIELD_READ = "read";
+
+    private FirebaseFirestore db;
+
+    public NotificationRepository() {
+        db = FirebaseFirestore.getInstance();
+    }
+
+    public interface OnNotificationActionListener {
+        void onSuccess();
+        void onError(Exception e);
+    }
+
+    public interface OnReadCursorsLoadListener {
+        void onSuccess(ReadCursors cursors);
+        void onError(Exception e);
+    }
+
+    public static class ReadCursors {
+        private long allRead;
+        private final Map<String, Long> readUpTo = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        public static ReadCursors fromSnapshot(DocumentSnapshot doc) {
+            ReadCursors readCursors = new ReadCursors();
+            if (doc == null || !doc.exists()) return readCursors;
+
+            Long allRead = doc.getLong(FIELD_ALL_READ);
+            readCursors.allRead = allRead != null ? allRead : 0;
+
+            Object read = doc.get(FIELD_READ);
+            if (read instanceof Map) {
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) read).entrySet()) {
+                    if (entry.getValue() instanceof Number) {
+                        readCursors.readUpTo.put(entry.getKey(), ((Number) entry.getValue()).longValue());
+                    }
+                }
+            }
+            return readCursors;
+        }
+
+        public long getAllRead() {
+            return allRead;
+        }
+
+        public boolean isUnread(DocumentSnapshot notificationDoc) {
+            // Notifikacije pročitane pre kursora imaju read == true
+            if (Boolean.TRUE.equals(notificationDoc.getBoolean(FIELD_READ))) return false;
+
+            Long timestamp = notificationDoc.getLong("timestamp");
+            return isUnread(notificationDoc.getId(), timestamp != null ? timestamp : 0);
+        }
+
+        public boolean isUnread(String notificationId, long timestamp) {
+            if (timestamp <= allRead) return false;
+            Long read = readUpTo.get(notificationId);
+            return read == null || timestamp > read;
+        }
+    }
+
+    // Za chat postoji jedna notifikacija po savezu i primaocu
+    public static String chatNotificationId(String allianceId, String userId) {
+        return allianceId + "_chat_" + userId;
+    }
+
+    private DocumentReference getReadCursorsRef(String userId) {
+        return db.collection(COLLECTION_READ_CURSORS).document(userId);
+    }
+
+    public void getReadCursors(String userId, OnReadCursorsLoadListener listener) {
+        getReadCursorsRef(userId)
+                .get()
+                .addOnSuccessListener(doc -> listener.onSuccess(ReadCursors.fromSnapshot(doc)))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error loading read cursors", e);
+                    listener.onError(e);
+                });
+    }
+
+    public ListenerRegistration listenToReadCursors(String userId, EventListener<DocumentSnapshot> listener) {
+        return getReadCursorsRef(userId).addSnapshotListener(listener);
+    }
+
+    /**
+     * Notifikacije korisnika novije od allRead, najnovije prve. Svi ekrani dele jedan
+     * listener po korisniku preko RealtimeHub-a: allRead ograničava upit samo kada se
+     * kanal otvara, a svaki pretplatnik sam filtrira po svom početnom vremenu ili kursorima.
+     */
+    public ListenerRegistration listenToNotifications(String userId, long allRead,
+                                                      EventListener<QuerySnapshot> listener) {
+        return RealtimeHub.getInstance().subscribe("notifications/" + userId,
+                db.collection(COLLECTION_NOTIFICATIONS)
+                        .whereEqualTo("userId", userId)
+                        .whereGreaterThan("timestamp", allRead)
+                        .orderBy("timestamp", Query.Direction.DESCENDING),
+                listener);
+    }
+
+    /**
+     * Označava jednu notifikaciju pročitanom do datog timestamp-a; starije notifikacije
+     * istog tipa i saveza ostaju nepročitane. Za chat se u istoj transakciji resetuje
+     * i brojač nepročitanih poruka na zbirnoj notifikaciji.
+     */
+    public void markRead(String userId, String notificationId, String type, long timestamp,
+                         OnNotificationActionListener listener) {
+        Map<String, Long> readUpTo = new HashMap<>();
+        readUpTo.put(notificationId, timestamp);
+
+        DocumentReference chatNotificationRef = "alliance_message".equals(type)
+                ? db.collection(COLLECTION_NOTIFICATIONS).document(notificationId)
+                : null;
+
+        advanceCursors(userId, readUpTo, 0, chatNotificationRef)
+                .addOnSuccessListener(aVoid -> listener.onSuccess())
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error updating read cursor", e);
+                    listener.onError(e);
+                });
+    }
+
+    /**
+     * Pomera allRead do najstarije nepročitane notifikacije iz docs (rezultat
+     * listenToNotifications), ili do najnovije ako su sve pročitane. Tako upit
+     * posle allRead ne preuzima celu istoriju pri svakom otvaranju.
+     */
+    public void advanceAllRead(String userId, List<DocumentSnapshot> docs, ReadCursors cursors) {
+        long boundary = readBoundary(docs, cursors, System.currentTimeMillis());
+        if (boundary <= cursors.getAllRead()) return;
+
+        advanceCursors(userId, new HashMap<>(), boundary, null)
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "allRead advanced to " + boundary))
+                .addOnFailureListener(e -> Log.e(TAG, "Error advancing allRead", e));
+    }
+
+    /**
+     * Timestamp-ove upisuje klijent pošiljaoca, pa granica ne prelazi lokalno vreme:
+     * pošiljalac sa satom koji žuri bi inače pomerio allRead u budućnost i sakrio
+     * notifikacije koje tek stižu.
+     */
+    private static long readBoundary(List<DocumentSnapshot> docs, ReadCursors cursors, long now) {
+        long newest = 0;
+        long oldestUnread = Long.MAX_VALUE;
+        for (DocumentSnapshot doc : docs) {
+            Long timestamp = doc.getLong("timestamp");
+            if (timestamp == null) continue;
+
+            newest = Math.max(newest, timestamp);
+            if (cursors.isUnread(doc)) {
+                oldestUnread = Math.min(oldestUnread, timestamp);
+            }
+        }
+        long boundary = oldestUnread == Long.MAX_VALUE ? newest : oldestUnread - 1;
+        return Math.min(boundary, now);
+    }
+
+    /**
+     * Kursori se samo pomeraju unapred: transakcija upisuje novu vrednost samo ako je
+     * veća od sačuvane, pa zakasneli upis sa drugog uređaja ili listenera ne vraća kursor.
+     * Unosi u read koje pokriva allRead se brišu u istom upisu.
+     */
+    private Task<Void> advanceCursors(String userId, Map<String, Long> timestampsById, long allRead,
+                                      DocumentReference chatNotificationRef) {
+        DocumentReference cursorsRef = getReadCursorsRef(userId);
+
+        return db.runTransaction(transaction -> {
+            ReadCursors current = ReadCursors.fromSnapshot(transaction.get(cursorsRef));
+            long newAllRead = Math.max(allRead, current.allRead);
+
+            Map<String, Object> read = new HashMap<>();
+            for (Map.Entry<String, Long> entry : timestampsById.entrySet()) {
+                Long stored = current.readUpTo.get(entry.getKey());
+                if (entry.getValue() > newAllRead && (stored == null || entry.getValue() > stored)) {
+                    read.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<String, Long> entry : current.readUpTo.entrySet()) {
+                if (entry.getValue() <= newAllRead && !read.containsKey(entry.getKey())) {
+                    read.put(entry.getKey(), FieldValue.delete());
+                }
+            }
+
+            Map<String, Object> update = new HashMap<>();
+            if (!read.isEmpty()) update.put(FIELD_READ, read);
+            if (allRead > current.allRead) update.put(FIELD_ALL_READ, allRead);
+            if (!update.isEmpty()) {
+                transaction.set(cursorsRef, update, SetOptions.merge());
+            }
+
+            if (chatNotificationRef != null) {
+                Map<String, Object> reset = new HashMap<>();
+                reset.put("unreadCount", 0);
+                transaction.set(chatNotificationRef, reset, SetOptions.merge());
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.bossapp.data.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deljeni snapshot listeneri za celu aplikaciju.
+ *
+ * Za svaki ključ (isti upit) postoji samo jedan Firestore listener, a snapshot-i se
+ * prosleđuju svim pretplatnicima. Novi pretplatnik odmah dobija poslednji snapshot.
+ * Listener se uklanja kada se odjavi poslednji pretplatnik. Koristi se samo sa main thread-a.
+ *
+ * getDocumentChanges() ponovljenog snapshot-a sadrži samo izmene iz tog događaja, ne
+ * celo stanje, pa pretplatnici rade sa getDocuments() i sami prate šta su već videli.
+ */
+public class RealtimeHub {
+    private static final String TAG = "RealtimeHub";
+
+    private static RealtimeHub instance;
+
+    private final Map<String, Channel> channels = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static class Channel {
+        ListenerRegistration registration;
+        final List<EventListener<QuerySnapshot>> subscribers = new ArrayList<>();
+        QuerySnapshot lastSnapshot;
+    }
+
+    public static synchronized RealtimeHub getInstance() {
+        if (instance == null) {
+            instance = new RealtimeHub();
+        }
+        return instance;
+    }
+
+    private RealtimeHub() {}
+
+    public ListenerRegistration subscribe(String key, Query query, EventListener<QuerySnapshot> listener) {
+        Channel channel = channels.get(key);
+
+        if (channel == null) {
+            Channel created = new Channel();
+            channels.put(key, created);
+            created.registration = query.addSnapshotListener((snapshot, error) -> {
+                if (snapshot != null) {
+                    created.lastSnapshot = snapshot;
+                }
+                List<EventListener<QuerySnapshot>> targets = new ArrayList<>(created.subscribers);
+                if (error != null) {
+                    // Listener posle greške više ne šalje izmene; sledeći subscribe() ga ponovo kači
+                    detach(key, created);
+                    Log.w(TAG, "Listener failed: " + key, error);
+                }
+                for (EventListener<QuerySnapshot> subscriber : targets) {
+                    subscriber.onEvent(snapshot, error);
+                }
+            });
+            channel = created;
+            Log.d(TAG, "Listener started: " + key);
+        } else if (channel.lastSnapshot != null) {
+            // Poslednji snapshot se šalje posle subscribe() da pozivalac stigne da sačuva registraciju
+            Channel existing = channel;
+            mainHandler.post(() -> {
+                if (existing.subscribers.contains(listener)) {
+                    listener.onEvent(existing.lastSnapshot, null);
+                }
+            });
+        }
+
+        channel.subscribers.add(listener);
+        return () -> unsubscribe(key, listener);
+    }
+
+    private void unsubscribe(String key, EventListener<QuerySnapshot> listener) {
+        Channel channel = channels.get(key);
+        if (channel == null || !channel.subscribers.remove(listener)) return;
+
+        if (channel.subscribers.isEmpty()) {
+            detach(key, channel);
+            Log.d(TAG, "Listener stopped: " + key);
+        }
+    }
+
+    private void detach(String key, Channel channel) {
+        if (channel.registration != null) {
+            channel.registration.remove();
+            channel.registration = null;
+        }
+        channel.subscribers.clear();
+        if (channels.get(key) == channel) {
+            channels.remove(key);
+        }
+    }
+}
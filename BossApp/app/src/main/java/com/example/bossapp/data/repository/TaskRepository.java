@@ -1,16 +1,29 @@
 package com.example.bossapp.data.repository;
 
 import android.util.Log;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
 import com.example.bossapp.data.model.Task;
+import com.example.bossapp.data.model.UserStatsAggregate;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class TaskRepository {
     private static final String TAG = "TaskRepository";
     private static final String COLLECTION_TASKS = "tasks";
+    private static final String COLLECTION_USER_STATS = "userStats";
     private final FirebaseFirestore db;
 
     public TaskRepository() {
@@ -27,24 +40,69 @@ public class TaskRepository {
         void onError(Exception e);
     }
 
+    public interface OnTasksPageLoadListener {
+        void onSuccess(TaskPage page);
+        void onError(Exception e);
+    }
+
+    public enum TaskFilter {
+        ALL,
+        ONE_TIME,
+        REPEATING
+    }
+
+    public static class TaskPage {
+        public final List<Task> tasks;
+        public final DocumentSnapshot cursor;
+        public final boolean hasMore;
+
+        TaskPage(List<Task> tasks, DocumentSnapshot cursor, boolean hasMore) {
+            this.tasks = tasks;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+    }
+
     public interface OnTaskLoadListener {
         void onSuccess(Task task);
         void onError(Exception e);
     }
 
+    public interface OnUserStatsLoadListener {
+        void onSuccess(UserStatsAggregate aggregate);
+        void onError(Exception e);
+    }
+
+    public interface OnTaskCountListener {
+        void onSuccess(long count);
+        void onError(Exception e);
+    }
+
     public interface OnTaskDeleteListener {
         void onSuccess();
         void onError(Exception e);
     }
 
+    /**
+     * Zadatak i razlika statistike se upisuju u istoj transakciji sa čitanjem prethodne
+     * verzije, pa dve istovremene izmene istog zadatka ne primenjuju razliku od iste
+     * stare verzije. Transakcija zahteva mrežu.
+     */
     public void saveTask(Task task, OnTaskSaveListener listener) {
-        String id = task.getId() != null ? task.getId() : db.collection(COLLECTION_TASKS).document().getId();
+        String id = task.getId() == null ? db.collection(COLLECTION_TASKS).document().getId() : task.getId();
         task.setId(id);
 
-        db.collection(COLLECTION_TASKS)
-                .document(id)
-                .set(task.toMap())
-                .addOnSuccessListener(aVoid -> {
+        DocumentReference taskRef = db.collection(COLLECTION_TASKS).document(id);
+
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot oldDoc = transaction.get(taskRef);
+                    Task oldTask = oldDoc.exists() ? oldDoc.toObject(Task.class) : null;
+
+                    transaction.set(taskRef, task.toMap());
+                    applyStatsDelta(transaction, task.getOwnerId(), oldTask, task);
+                    return null;
+                })
+                .addOnSuccessListener(result -> {
                     Log.d(TAG, "Task saved successfully");
                     listener.onSuccess();
                 })
@@ -54,6 +112,29 @@ public class TaskRepository {
                 });
     }
 
+    public DocumentReference getUserStatsRef(String userId) {
+        return db.collection(COLLECTION_USER_STATS).document(userId);
+    }
+
+    /**
+     * Upisuje razliku statistike između stare i nove verzije zadatka u istoj transakciji.
+     */
+    public void applyStatsDelta(Transaction transaction, String ownerId, Task oldTask, Task newTask) {
+        if (ownerId == null) return;
+
+        Map<String, Object> delta = UserStatsAggregate.delta(oldTask, newTask);
+        if (!delta.isEmpty()) {
+            transaction.set(getUserStatsRef(ownerId), delta, SetOptions.merge());
+        }
+    }
+
+    public void getUserStats(String userId, OnUserStatsLoadListener listener) {
+        getUserStatsRef(userId)
+                .get()
+                .addOnSuccessListener(doc -> listener.onSuccess(UserStatsAggregate.fromSnapshot(doc)))
+                .addOnFailureListener(listener::onError);
+    }
+
     public void getTasksByUser(String userId, OnTasksLoadListener listener) {
         db.collection(COLLECTION_TASKS)
                 .whereEqualTo("ownerId", userId)
@@ -70,6 +151,106 @@ public class TaskRepository {
                 .addOnFailureListener(listener::onError);
     }
 
+    /**
+     * Preračunava userStats iz datih zadataka i prepisuje dokument u transakciji.
+     *
+     * Zadaci se ponovo čitaju u transakciji zajedno sa userStats dokumentom, pa izmena
+     * zadatka ili inkrement statistike tokom preračuna ponavlja transakciju umesto da
+     * bude pregažen. Zadatak kreiran posle upita koji je dao taskIds nije u preračunu;
+     * sledeći rebuild ga uključuje.
+     */
+    public void rebuildUserStats(String userId, List<String> taskIds, OnUserStatsLoadListener listener) {
+        DocumentReference statsRef = getUserStatsRef(userId);
+
+        db.runTransaction(transaction -> {
+                    List<Task> tasks = new ArrayList<>();
+                    for (String taskId : taskIds) {
+                        DocumentSnapshot doc = transaction.get(db.collection(COLLECTION_TASKS).document(taskId));
+                        Task task = doc.exists() ? doc.toObject(Task.class) : null;
+                        if (task != null && userId.equals(task.getOwnerId())) {
+                            tasks.add(task);
+                        }
+                    }
+                    transaction.get(statsRef);
+
+                    UserStatsAggregate aggregate = UserStatsAggregate.fromTasks(tasks);
+                    transaction.set(statsRef, aggregate.toMap());
+                    return aggregate;
+                })
+                .addOnSuccessListener(aggregate -> {
+                    Log.d(TAG, "User stats rebuilt");
+                    listener.onSuccess(aggregate);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error rebuilding user stats", e);
+                    listener.onError(e);
+                });
+    }
+
+    /**
+     * Učitava jednu stranicu zadataka. Za prvu stranicu cursor je null,
+     * a za sledeće se prosleđuje cursor iz prethodne TaskPage.
+     *
+     * ONE_TIME i REPEATING traže kompozitne indekse iz firestore.indexes.json.
+     * ALL vraća obe vrste, sortirane po id-ju dokumenta: orderBy po executionTime ili
+     * startDate bi izostavio zadatke kojima to polje nedostaje.
+     */
+    public void getTasksPage(String ownerId, TaskFilter filter, DocumentSnapshot cursor, int pageSize,
+                             OnTasksPageLoadListener listener) {
+        Query query = db.collection(COLLECTION_TASKS).whereEqualTo("ownerId", ownerId);
+
+        if (filter == TaskFilter.ONE_TIME) {
+            query = query.whereEqualTo("repeating", false).orderBy("executionTime");
+        } else if (filter == TaskFilter.REPEATING) {
+            // Ponavljajući zadaci nemaju executionTime, pa se sortiraju po startDate
+            query = query.whereEqualTo("repeating", true).orderBy("startDate");
+        } else {
+            query = query.orderBy(FieldPath.documentId());
+        }
+
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+
+        query.limit(pageSize)
+                .get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<Task> tasks = new ArrayList<>();
+                    for (QueryDocumentSnapshot doc : querySnapshot) {
+                        Task task = doc.toObject(Task.class);
+                        task.setId(doc.getId());
+                        tasks.add(task);
+                    }
+
+                    List<DocumentSnapshot> docs = querySnapshot.getDocuments();
+                    DocumentSnapshot last = docs.isEmpty() ? cursor : docs.get(docs.size() - 1);
+                    listener.onSuccess(new TaskPage(tasks, last, docs.size() == pageSize));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error loading tasks page", e);
+                    listener.onError(e);
+                });
+    }
+
+    /**
+     * Broji zadatke sa datim statusima preko count() agregacije (bez preuzimanja dokumenata).
+     */
+    public void countTasksByStatus(String ownerId, List<String> statuses, OnTaskCountListener listener) {
+        db.collection(COLLECTION_TASKS)
+                .whereEqualTo("ownerId", ownerId)
+                .whereIn("status", statuses)
+                .count()
+                .get(AggregateSource.SERVER)
+                .addOnSuccessListener(snapshot -> listener.onSuccess(snapshot.getCount()))
+                .addOnFailureListener(listener::onError);
+    }
+
+    public ListenerRegistration listenToUserTasks(String userId, EventListener<QuerySnapshot> listener) {
+        return db.collection(COLLECTION_TASKS)
+                .whereEqualTo("ownerId", userId)
+                .addSnapshotListener(listener);
+    }
+
     public void getTaskById(String taskId, OnTaskLoadListener listener) {
         db.collection(COLLECTION_TASKS)
                 .document(taskId)
@@ -87,10 +268,21 @@ public class TaskRepository {
     }
 
     public void deleteTask(String taskId, OnTaskDeleteListener listener) {
-        db.collection(COLLECTION_TASKS)
-                .document(taskId)
-                .delete()
-                .addOnSuccessListener(aVoid -> {
+        DocumentReference taskRef = db.collection(COLLECTION_TASKS).document(taskId);
+
+        // Kao i saveTask: ako je zadatak već obrisan, statistika se ne umanjuje ponovo
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot oldDoc = transaction.get(taskRef);
+                    if (!oldDoc.exists()) return null;
+
+                    Task oldTask = oldDoc.toObject(Task.class);
+                    transaction.delete(taskRef);
+                    if (oldTask != null) {
+                        applyStatsDelta(transaction, oldTask.getOwnerId(), oldTask, null);
+                    }
+                    return null;
+                })
+                .addOnSuccessListener(result -> {
                     Log.d(TAG, "Task deleted successfully");
                     listener.onSuccess();
                 })
@@ -0,0 +1,177 @@
+package com.example.bossapp.data.repository;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.bossapp.data.model.User;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keš korisničkih profila za celu aplikaciju.
+ *
+ * Trenutni korisnik se drži svežim preko snapshot listenera na njegovom dokumentu,
+ * pa se između tabova ne učitava ponovo. Ostali korisnici važe ENTRY_TTL_MS.
+ * Istovremeni zahtevi za istog korisnika dele jedan get(). Pozivaoci uvek dobijaju
+ * kopiju, pa izmene pre čuvanja ne menjaju keš. Koristi se samo sa main thread-a.
+ */
+public class UserCache {
+    private static final String TAG = "UserCache";
+    private static final String COLLECTION_USERS = "users";
+
+    private static final int MAX_ENTRIES = 200;
+    private static final long ENTRY_TTL_MS = 30 * 1000;
+
+    private static UserCache instance;
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final LruCache<String, Entry> entries = new LruCache<>(MAX_ENTRIES);
+    private final Map<String, List<UserRepository.OnUserLoadListener>> inFlight = new HashMap<>();
+
+    private ListenerRegistration currentUserListener;
+    private String watchedUserId;
+    private boolean usernameLowerChecked;
+
+    private static class Entry {
+        final User user;
+        final long loadedAt;
+        final boolean live;
+
+        Entry(User user, boolean live) {
+            this.user = user;
+            this.loadedAt = SystemClock.elapsedRealtime();
+            this.live = live;
+        }
+
+        boolean isFresh() {
+            return live || SystemClock.elapsedRealtime() - loadedAt < ENTRY_TTL_MS;
+        }
+    }
+
+    public static synchronized UserCache getInstance() {
+        if (instance == null) {
+            instance = new UserCache();
+        }
+        return instance;
+    }
+
+    private UserCache() {}
+
+    public void get(String userId, UserRepository.OnUserLoadListener listener) {
+        watchCurrentUser();
+
+        User cached = peek(userId);
+        if (cached != null) {
+            listener.onSuccess(cached);
+            return;
+        }
+
+        List<UserRepository.OnUserLoadListener> waiting = inFlight.get(userId);
+        if (waiting != null) {
+            waiting.add(listener);
+            return;
+        }
+
+        waiting = new ArrayList<>();
+        waiting.add(listener);
+        inFlight.put(userId, waiting);
+
+        db.collection(COLLECTION_USERS)
+                .document(userId)
+                .get()
+                .addOnSuccessListener(doc -> {
+                    List<UserRepository.OnUserLoadListener> listeners = inFlight.remove(userId);
+                    if (!doc.exists()) {
+                        Exception e = new FirebaseFirestoreException("User does not exist.",
+                                FirebaseFirestoreException.Code.NOT_FOUND);
+                        for (UserRepository.OnUserLoadListener l : listeners) l.onError(e);
+                        return;
+                    }
+
+                    User user = doc.toObject(User.class);
+                    put(user);
+                    for (UserRepository.OnUserLoadListener l : listeners) l.onSuccess(new User(user));
+                })
+                .addOnFailureListener(e -> {
+                    List<UserRepository.OnUserLoadListener> listeners = inFlight.remove(userId);
+                    for (UserRepository.OnUserLoadListener l : listeners) l.onError(e);
+                });
+    }
+
+    // Kopija sveže vrednosti iz keša ili null
+    public User peek(String userId) {
+        if (userId == null) return null;
+        Entry entry = entries.get(userId);
+        if (entry == null || !entry.isFresh()) return null;
+        return new User(entry.user);
+    }
+
+    public void put(User user) {
+        if (user == null || user.getUserId() == null) return;
+        boolean live = user.getUserId().equals(watchedUserId) && currentUserListener != null;
+        entries.put(user.getUserId(), new Entry(new User(user), live));
+    }
+
+    public void invalidate(String userId) {
+        if (userId != null) entries.remove(userId);
+    }
+
+    public void clear() {
+        entries.evictAll();
+        stopWatching(watchedUserId);
+    }
+
+    private void stopWatching(String userId) {
+        if (userId == null || !userId.equals(watchedUserId)) return;
+        if (currentUserListener != null) {
+            currentUserListener.remove();
+            currentUserListener = null;
+        }
+        watchedUserId = null;
+    }
+
+    /**
+     * Snapshot listener za ulogovanog korisnika - svaka promena dokumenta (i lokalni upisi)
+     * odmah osvežava keš. Firestore deli isti target sa UserManager.observeUserChanges.
+     */
+    private void watchCurrentUser() {
+        String currentUserId = FirebaseAuth.getInstance().getUid();
+        if (currentUserId == null || currentUserId.equals(watchedUserId)) return;
+
+        clear();
+        watchedUserId = currentUserId;
+        usernameLowerChecked = false;
+        currentUserListener = db.collection(COLLECTION_USERS)
+                .document(currentUserId)
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        // Listener je posle greške mrtav: entry više nije živ, važi TTL,
+                        // a sledeći get() pokreće novo praćenje
+                        Log.e(TAG, "Current user listener error", e);
+                        stopWatching(currentUserId);
+                        invalidate(currentUserId);
+                        return;
+                    }
+                    if (snapshot != null && snapshot.exists()) {
+                        User user = snapshot.toObject(User.class);
+                        put(user);
+                        // Nalozi napravljeni pre pretrage nemaju usernameLower; dopunjuje se
+                        // na početku svake sesije, ne samo pri eksplicitnoj prijavi
+                        if (!usernameLowerChecked) {
+                            usernameLowerChecked = true;
+                            new UserRepository().backfillUsernameLower(user);
+                        }
+                    } else {
+                        invalidate(currentUserId);
+                    }
+                });
+    }
+}
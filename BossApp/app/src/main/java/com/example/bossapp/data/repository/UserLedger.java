@@ -0,0 +1,156 @@
+package com.example.bossapp.data.repository;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Promene novčića, XP i PP korisnika kao FieldValue.increment razlike.
+ *
+ * Upisuje se samo izmenjeno polje, pa istovremene promene (nagrada iz borbe,
+ * kupovina na drugom uređaju) ne gaze jedna drugu kao pri čuvanju celog User objekta.
+ * Za potrošnju postoji varijanta sa transakcijom koja ne dozvoljava negativno stanje.
+ */
+public class UserLedger {
+    private static final String TAG = "UserLedger";
+    private static final String COLLECTION_USERS = "users";
+
+    private final FirebaseFirestore db;
+
+    public UserLedger() {
+        db = FirebaseFirestore.getInstance();
+    }
+
+    public interface OnLedgerListener {
+        void onSuccess();
+        void onError(Exception e);
+    }
+
+    public static class Delta {
+        private long coins;
+        private long xp;
+        private long pp;
+
+        public Delta coins(long amount) {
+            coins += amount;
+            return this;
+        }
+
+        public Delta xp(long amount) {
+            xp += amount;
+            return this;
+        }
+
+        public Delta pp(long amount) {
+            pp += amount;
+            return this;
+        }
+
+        public long getCoins() { return coins; }
+        public long getXp() { return xp; }
+        public long getPp() { return pp; }
+
+        public boolean isEmpty() {
+            return coins == 0 && xp == 0 && pp == 0;
+        }
+
+        Map<String, Object> toUpdate() {
+            Map<String, Object> update = new HashMap<>();
+            if (coins != 0) update.put("coins", FieldValue.increment(coins));
+            if (xp != 0) update.put("xp", FieldValue.increment(xp));
+            if (pp != 0) update.put("pp", FieldValue.increment(pp));
+            return update;
+        }
+    }
+
+    public DocumentReference getUserRef(String userId) {
+        return db.collection(COLLECTION_USERS).document(userId);
+    }
+
+    // Bez provere stanja - za nagrade i ostale promene koje ne mogu da odu ispod nule
+    public void apply(String userId, Delta delta, OnLedgerListener listener) {
+        if (delta.isEmpty()) {
+            listener.onSuccess();
+            return;
+        }
+
+        getUserRef(userId)
+                .update(delta.toUpdate())
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Applied delta for " + userId);
+                    listener.onSuccess();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error applying delta", e);
+                    listener.onError(e);
+                });
+    }
+
+    /**
+     * Transakcija koja čita trenutno stanje i odbija promenu ako bi novčići, XP
+     * ili PP pali ispod nule (INVALID_ARGUMENT - SDK ponavlja transakciju za
+     * ABORTED/FAILED_PRECONDITION, pa bi greška stigla tek posle nekoliko pokušaja).
+     */
+    public void applyGuarded(String userId, Delta delta, OnLedgerListener listener) {
+        DocumentReference userRef = getUserRef(userId);
+
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot userDoc = transaction.get(userRef);
+                    applyGuarded(transaction, userDoc, delta);
+                    return null;
+                })
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Applied guarded delta for " + userId);
+                    listener.onSuccess();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error applying guarded delta", e);
+                    listener.onError(e);
+                });
+    }
+
+    // Za transakcije drugih repozitorijuma; userDoc mora biti pročitan u istoj transakciji
+    public static void applyGuarded(Transaction transaction, DocumentSnapshot userDoc, Delta delta)
+            throws FirebaseFirestoreException {
+        checkGuards(userDoc, delta);
+        if (!delta.isEmpty()) {
+            transaction.update(userDoc.getReference(), delta.toUpdate());
+        }
+    }
+
+    private static void checkGuards(DocumentSnapshot userDoc, Delta delta) throws FirebaseFirestoreException {
+        if (!userDoc.exists()) {
+            throw new FirebaseFirestoreException("User does not exist.",
+                    FirebaseFirestoreException.Code.NOT_FOUND);
+        }
+        if (getLong(userDoc, "coins") + delta.coins < 0) {
+            throw new FirebaseFirestoreException("Not enough coins",
+                    FirebaseFirestoreException.Code.INVALID_ARGUMENT);
+        }
+        if (getLong(userDoc, "xp") + delta.xp < 0 || getLong(userDoc, "pp") + delta.pp < 0) {
+            throw new FirebaseFirestoreException("Balance cannot go below zero",
+                    FirebaseFirestoreException.Code.INVALID_ARGUMENT);
+        }
+    }
+
+    public void addCoins(String userId, int amount, OnLedgerListener listener) {
+        apply(userId, new Delta().coins(amount), listener);
+    }
+
+    public void spendCoins(String userId, int amount, OnLedgerListener listener) {
+        applyGuarded(userId, new Delta().coins(-amount), listener);
+    }
+
+    private static long getLong(DocumentSnapshot doc, String field) {
+        Long value = doc.getLong(field);
+        return value != null ? value : 0;
+    }
+}
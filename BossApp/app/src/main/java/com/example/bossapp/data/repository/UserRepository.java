@@ -2,6 +2,7 @@ package com.example.bossapp.data.repository;
 
 import android.util.Log;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.example.bossapp.data.model.User;
 
 import java.util.List;
@@ -55,6 +56,7 @@ public class UserRepository {
                 .set(user.toMap())
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "User successfully saved");
+                    UserCache.getInstance().invalidate(user.getUserId());
                     listener.onSuccess();
                 })
                 .addOnFailureListener(e -> {
@@ -63,27 +65,40 @@ public class UserRepository {
                 });
     }
 
-    // Učitavanje korisnika iz Firestore
+    // Upisuje usernameLower nalozima napravljenim pre nego što je polje uvedeno
+    public void backfillUsernameLower(User user) {
+        if (user == null || user.getUsername() == null || user.hasStoredUsernameLower()) return;
+
+        db.collection(COLLECTION_USERS)
+                .document(user.getUserId())
+                .update("usernameLower", user.getUsernameLower())
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "usernameLower backfilled"))
+                .addOnFailureListener(e -> Log.e(TAG, "Error backfilling usernameLower", e));
+    }
+
+    // Učitavanje korisnika - iz UserCache ako je tamo, inače iz Firestore
     public void getUserById(String userId, OnUserLoadListener listener) {
         Log.d(TAG, "Loading user: " + userId);
 
-        db.collection(COLLECTION_USERS)
-                .document(userId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
-                        Log.d(TAG, "User loaded: " + user.getUsername());
-                        listener.onSuccess(user);
-                    } else {
-                        Log.e(TAG, "User does not exist.");
-                        listener.onError(new Exception("User does not exist."));
-                    }
-                })
-                .addOnFailureListener(e -> {
+        UserCache.getInstance().get(userId, new OnUserLoadListener() {
+            @Override
+            public void onSuccess(User user) {
+                Log.d(TAG, "User loaded: " + user.getUsername());
+                listener.onSuccess(user);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (e instanceof FirebaseFirestoreException &&
+                        ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.NOT_FOUND) {
+                    Log.e(TAG, "User does not exist.");
+                    listener.onError(new Exception("User does not exist."));
+                } else {
                     Log.e(TAG, "Error loading user", e);
                     listener.onError(e);
-                });
+                }
+            }
+        });
     }
 
     public interface OnUserLoadListener {
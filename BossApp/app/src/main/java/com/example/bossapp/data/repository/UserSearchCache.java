@@ -0,0 +1,117 @@
+package com.example.bossapp.data.repository;
+
+import android.os.SystemClock;
+
+import com.example.bossapp.data.model.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keš skorašnjih rezultata pretrage korisnika, organizovan kao prefiksno stablo.
+ *
+ * Ako je za prefiks vraćeno manje rezultata od limita upita, to je kompletan skup,
+ * pa se svaki duži prefiks odgovara lokalnim filtriranjem tog skupa bez upita.
+ * Čuva se najviše MAX_QUERIES prefiksa, svaki važi RESULT_TTL_MS.
+ */
+public class UserSearchCache {
+    private static final int MAX_QUERIES = 50;
+    private static final long RESULT_TTL_MS = 60 * 1000;
+
+    private static UserSearchCache instance;
+
+    private final Node root = new Node();
+    // Redosled korišćenja prefiksa, za izbacivanje najstarijeg
+    private final LinkedHashMap<String, Boolean> recentPrefixes = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        List<User> results;
+        boolean complete;
+        long storedAt;
+
+        boolean hasFreshResults() {
+            return results != null && SystemClock.elapsedRealtime() - storedAt < RESULT_TTL_MS;
+        }
+    }
+
+    public static synchronized UserSearchCache getInstance() {
+        if (instance == null) {
+            instance = new UserSearchCache();
+        }
+        return instance;
+    }
+
+    private UserSearchCache() {}
+
+    // Rezultati za prefiks (mala slova) ili null ako mora da se pita server
+    public synchronized List<User> lookup(String prefix) {
+        Node node = root;
+        Node completeAncestor = null;
+
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            if (node.hasFreshResults() && node.complete) {
+                completeAncestor = node;
+            }
+            node = node.children.get(prefix.charAt(i));
+        }
+
+        if (node != null && node.hasFreshResults()) {
+            recentPrefixes.get(prefix);
+            return new ArrayList<>(node.results);
+        }
+        if (completeAncestor == null) {
+            return null;
+        }
+
+        List<User> filtered = new ArrayList<>();
+        for (User user : completeAncestor.results) {
+            String usernameLower = user.getUsernameLower();
+            if (usernameLower != null && usernameLower.startsWith(prefix)) {
+                filtered.add(user);
+            }
+        }
+        return filtered;
+    }
+
+    public synchronized void put(String prefix, List<User> results, boolean complete) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+        }
+        node.results = new ArrayList<>(results);
+        node.complete = complete;
+        node.storedAt = SystemClock.elapsedRealtime();
+
+        recentPrefixes.put(prefix, Boolean.TRUE);
+        if (recentPrefixes.size() > MAX_QUERIES) {
+            Iterator<String> eldest = recentPrefixes.keySet().iterator();
+            String evicted = eldest.next();
+            eldest.remove();
+            remove(root, evicted, 0);
+        }
+    }
+
+    public synchronized void clear() {
+        root.children.clear();
+        root.results = null;
+        recentPrefixes.clear();
+    }
+
+    // Briše rezultate za prefiks i čvorove koji su ostali prazni; vraća true ako je node prazan
+    private static boolean remove(Node node, String prefix, int depth) {
+        if (depth == prefix.length()) {
+            node.results = null;
+        } else {
+            Node child = node.children.get(prefix.charAt(depth));
+            if (child != null && remove(child, prefix, depth + 1)) {
+                node.children.remove(prefix.charAt(depth));
+            }
+        }
+        return node.results == null && node.children.isEmpty();
+    }
+}
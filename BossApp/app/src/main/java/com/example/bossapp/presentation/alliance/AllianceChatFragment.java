@@ -16,23 +16,29 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.bossapp.R;
+import com.example.bossapp.data.local.ChatMessageStore;
 import com.example.bossapp.data.model.AllianceMessage;
 import com.example.bossapp.data.model.User;
 import com.example.bossapp.data.repository.AllianceChatRepository;
 import com.example.bossapp.data.repository.UserRepository;
 import com.example.bossapp.presentation.base.BaseFragment;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AllianceChatFragment extends BaseFragment {
 
     private static final String TAG = "AllianceChatFragment";  // ← OVO JE VAŽNO!
     private static final String ARG_ALLIANCE_ID = "allianceId";
     private static final String ARG_ALLIANCE_NAME = "allianceName";
+    private static final int LOAD_OLDER_THRESHOLD = 5;
 
     private RecyclerView rvMessages;
     private EditText etMessage;
@@ -50,6 +56,11 @@ public class AllianceChatFragment extends BaseFragment {
     private User currentUser;
 
     private ListenerRegistration messageListener;
+    private final Set<String> messageIds = new HashSet<>();
+    private ChatMessageStore messageStore;
+    private final ExecutorService storeExecutor = Executors.newSingleThreadExecutor();
+    private boolean hasOlderMessages = true;
+    private boolean loadingOlder = false;
 
     public static AllianceChatFragment newInstance(String allianceId, String allianceName) {
         AllianceChatFragment fragment = new AllianceChatFragment();
@@ -82,10 +93,12 @@ public class AllianceChatFragment extends BaseFragment {
         initViews(view);
 
         chatRepository = new AllianceChatRepository();
+        messageStore = ChatMessageStore.getInstance(requireContext());
         userRepository = new UserRepository();
         currentUserId = FirebaseAuth.getInstance().getCurrentUser().getUid();
 
         setupRecyclerView();
+        startListeningToMessages();
         loadCurrentUser();
     }
 
@@ -98,6 +111,13 @@ public class AllianceChatFragment extends BaseFragment {
         }
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // Upisi koji su već u redu se završavaju
+        storeExecutor.shutdown();
+    }
+
     private void initViews(View view) {
         rvMessages = view.findViewById(R.id.rvMessages);
         etMessage = view.findViewById(R.id.etMessage);
@@ -112,6 +132,16 @@ public class AllianceChatFragment extends BaseFragment {
         rvMessages.setLayoutManager(layoutManager);
         rvMessages.setAdapter(adapter);
 
+        // Starije poruke se učitavaju kada korisnik skroluje blizu vrha
+        rvMessages.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= LOAD_OLDER_THRESHOLD) {
+                    loadOlderMessages();
+                }
+            }
+        });
+
         // Scroll to bottom when keyboard opens
         rvMessages.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
             if (bottom < oldBottom && messageList.size() > 0) {
@@ -133,7 +163,6 @@ public class AllianceChatFragment extends BaseFragment {
                 Log.d(TAG, "Current user loaded: " + user.getUsername());
 
                 btnSend.setOnClickListener(v -> sendMessage());
-                startListeningToMessages();
             }
 
             @Override
@@ -148,7 +177,29 @@ public class AllianceChatFragment extends BaseFragment {
     private void startListeningToMessages() {
         Log.d(TAG, "Starting to listen to messages for alliance: " + allianceId);
 
-        messageListener = chatRepository.listenToMessages(allianceId, (querySnapshot, error) -> {
+        // Prvo se prikazuju poruke iz lokalnog keša, pa se sa servera traže samo novije
+        storeExecutor.execute(() -> {
+            List<AllianceMessage> cached = messageStore.getLatestMessages(allianceId,
+                    AllianceChatRepository.MESSAGE_WINDOW_SIZE);
+            // Najnovija keširana poruka je granica odakle se traže nove
+            AllianceMessage newestCached = cached.isEmpty() ? null : cached.get(cached.size() - 1);
+            runOnUiThread(() -> {
+                for (AllianceMessage msg : cached) {
+                    insertMessage(msg);
+                }
+                if (!messageList.isEmpty()) {
+                    rvMessages.scrollToPosition(messageList.size() - 1);
+                }
+                listenToNewMessages(newestCached);
+            });
+        });
+    }
+
+    private void listenToNewMessages(AllianceMessage newestCached) {
+        boolean[] firstSnapshot = {true};
+
+        messageListener = chatRepository.listenToNewMessages(allianceId, newestCached,
+                AllianceChatRepository.MESSAGE_WINDOW_SIZE, (querySnapshot, error) -> {
             if (error != null) {
                 Log.e(TAG, "Error loading messages: " + error.getMessage(), error);
                 Toast.makeText(requireContext(),
@@ -157,26 +208,145 @@ public class AllianceChatFragment extends BaseFragment {
                 return;
             }
 
-            if (querySnapshot != null) {
-                Log.d(TAG, "Received " + querySnapshot.size() + " messages");
+            if (querySnapshot == null) return;
+
+            boolean first = firstSnapshot[0];
+            firstSnapshot[0] = false;
 
+            // Ako je od poslednjeg otvaranja stiglo više od prozora, keš više nije
+            // neprekinut niz do najnovije poruke i odbacuje se
+            boolean dropCache = first && newestCached != null
+                    && querySnapshot.size() >= AllianceChatRepository.MESSAGE_WINDOW_SIZE;
+            if (dropCache) {
+                messageIds.clear();
                 messageList.clear();
-                for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                    AllianceMessage msg = doc.toObject(AllianceMessage.class);
-                    if (msg != null) {
-                        Log.d(TAG, "Message: " + msg.getSenderUsername() + " - " + msg.getMessageText());
-                        messageList.add(msg);
-                    }
-                }
                 adapter.notifyDataSetChanged();
+            }
 
-                if (messageList.size() > 0) {
-                    rvMessages.smoothScrollToPosition(messageList.size() - 1);
+            List<AllianceMessage> received = new ArrayList<>();
+            boolean appended = false;
+            for (DocumentChange change : querySnapshot.getDocumentChanges()) {
+                AllianceMessage msg = change.getDocument().toObject(AllianceMessage.class);
+                switch (change.getType()) {
+                    case ADDED:
+                        appended |= insertMessage(msg);
+                        received.add(msg);
+                        break;
+                    case MODIFIED:
+                        replaceMessage(msg);
+                        received.add(msg);
+                        break;
+                    case REMOVED:
+                        // Poruka je samo ispala iz prozora (limitToLast), i dalje je deo istorije
+                        break;
                 }
             }
+
+            if (appended) {
+                rvMessages.smoothScrollToPosition(messageList.size() - 1);
+            }
+
+            storeExecutor.execute(() -> {
+                if (dropCache) messageStore.clear(allianceId);
+                messageStore.saveMessages(received);
+                if (first) messageStore.compact(allianceId);
+            });
+        });
+    }
+
+    private void runOnUiThread(Runnable action) {
+        if (getActivity() == null) return;
+        getActivity().runOnUiThread(() -> {
+            if (getView() != null) action.run();
+        });
+    }
+
+    /**
+     * Ubacuje poruku po vremenu (pa po id-ju); nove poruke skoro uvek idu na kraj.
+     * Vraća true ako je poruka dodata na kraj liste.
+     */
+    private boolean insertMessage(AllianceMessage msg) {
+        if (!messageIds.add(msg.getMessageId())) return false;
+
+        int position = messageList.size();
+        while (position > 0 && isAfter(messageList.get(position - 1), msg)) {
+            position--;
+        }
+        messageList.add(position, msg);
+        adapter.notifyItemInserted(position);
+        return position == messageList.size() - 1;
+    }
+
+    // Isti redosled kao upiti: timestamp, pa id poruke
+    private static boolean isAfter(AllianceMessage a, AllianceMessage b) {
+        if (a.getTimestamp() != b.getTimestamp()) return a.getTimestamp() > b.getTimestamp();
+        return a.getMessageId().compareTo(b.getMessageId()) > 0;
+    }
+
+    private void replaceMessage(AllianceMessage msg) {
+        for (int i = messageList.size() - 1; i >= 0; i--) {
+            if (messageList.get(i).getMessageId().equals(msg.getMessageId())) {
+                messageList.set(i, msg);
+                adapter.notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starije poruke se prvo traže u lokalnom kešu, a tek kada se on potroši sa servera.
+     * Poruke sa servera se ne upisuju u keš da u njemu ne bi nastale rupe.
+     */
+    private void loadOlderMessages() {
+        if (loadingOlder || !hasOlderMessages || messageList.isEmpty()) return;
+        loadingOlder = true;
+
+        AllianceMessage oldest = messageList.get(0);
+        long before = oldest.getTimestamp();
+        String beforeId = oldest.getMessageId();
+        storeExecutor.execute(() -> {
+            List<AllianceMessage> cached = messageStore.getMessagesBefore(allianceId, before, beforeId,
+                    AllianceChatRepository.MESSAGE_PAGE_SIZE);
+            runOnUiThread(() -> {
+                if (!cached.isEmpty()) {
+                    prependMessages(cached);
+                    loadingOlder = false;
+                } else {
+                    loadOlderMessagesFromServer(before, beforeId);
+                }
+            });
         });
     }
 
+    private void loadOlderMessagesFromServer(long before, String beforeId) {
+        chatRepository.loadOlderMessages(allianceId, before, beforeId, AllianceChatRepository.MESSAGE_PAGE_SIZE,
+                new AllianceChatRepository.OnMessagesPageLoadListener() {
+                    @Override
+                    public void onSuccess(AllianceChatRepository.MessagePage page) {
+                        loadingOlder = false;
+                        hasOlderMessages = page.hasMore;
+                        prependMessages(page.messages);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        loadingOlder = false;
+                        Log.e(TAG, "Error loading older messages: " + e.getMessage(), e);
+                    }
+                });
+    }
+
+    private void prependMessages(List<AllianceMessage> messages) {
+        List<AllianceMessage> older = new ArrayList<>();
+        for (AllianceMessage msg : messages) {
+            if (messageIds.add(msg.getMessageId())) {
+                older.add(msg);
+            }
+        }
+        messageList.addAll(0, older);
+        adapter.notifyItemRangeInserted(0, older.size());
+    }
+
     private void sendMessage() {
         String messageText = etMessage.getText().toString().trim();
 
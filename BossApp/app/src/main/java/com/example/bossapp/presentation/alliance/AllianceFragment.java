@@ -17,6 +17,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.bossapp.R;
 import com.example.bossapp.data.model.Alliance;
 import com.example.bossapp.data.model.MemberProgress;
+import com.example.bossapp.data.model.MissionProgressAggregate;
 import com.example.bossapp.data.model.User;
 import com.example.bossapp.data.repository.AllianceRepository;
 import com.example.bossapp.data.repository.UserRepository;
@@ -25,10 +26,10 @@ import com.example.bossapp.presentation.friends.FindFriendsAdapter;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class AllianceFragment extends BaseFragment {
 
@@ -54,6 +55,28 @@ public class AllianceFragment extends BaseFragment {
     private RecyclerView rvMissionMembersProgress;
     private MissionProgressAdapter missionProgressAdapter;
     private List<MemberProgress> missionProgressList = new ArrayList<>();
+    private final MissionProgressAggregate missionProgress = new MissionProgressAggregate(missionProgressList);
+    private ListenerRegistration missionListener;
+    private ListenerRegistration memberProgressListener;
+    private String trackedMissionId;
+
+    private final MissionProgressAggregate.OnRowsChangedListener missionRowsListener =
+            new MissionProgressAggregate.OnRowsChangedListener() {
+                @Override
+                public void onInserted(int position) {
+                    missionProgressAdapter.notifyItemInserted(position);
+                }
+
+                @Override
+                public void onChanged(int position) {
+                    missionProgressAdapter.notifyItemChanged(position);
+                }
+
+                @Override
+                public void onRemoved(int position) {
+                    missionProgressAdapter.notifyItemRemoved(position);
+                }
+            };
 
 
     private AllianceRepository allianceRepository;
@@ -158,6 +181,7 @@ public class AllianceFragment extends BaseFragment {
     }
 
     private void showNoAllianceView() {
+        stopTrackingMissionProgress();
         viewNoAlliance.setVisibility(View.VISIBLE);
         viewHasAlliance.setVisibility(View.GONE);
     }
@@ -189,6 +213,8 @@ public class AllianceFragment extends BaseFragment {
         String missionId = alliance.getCurrentMissionId();
         if (missionId != null && !missionId.isEmpty()) {
             trackMissionProgress(missionId);
+        } else {
+            stopTrackingMissionProgress();
         }
     }
 
@@ -239,43 +265,56 @@ public class AllianceFragment extends BaseFragment {
 
 
     private void trackMissionProgress(String missionId) {
-        allianceRepository.getMissionProgress(missionId, new AllianceRepository.OnMissionProgressListener() {
-            @Override
-            public void onProgress(Map<String, Map<String, Object>> membersProgress, int totalDamage, int bossHp) {
-                tvMissionProgress.setText("Boss HP: " + bossHp + " | Ukupna šteta: " + totalDamage);
-
-                missionProgressList.clear();
-                for (String memberId : membersProgress.keySet()) {
-                    Map<String, Object> data = membersProgress.get(memberId);
-                    String username = (String) data.get("username");
-                    int storePurchases = data.get("storePurchases") != null ? ((Long) data.get("storePurchases")).intValue() : 0;
-                    int bossHits = data.get("bossHits") != null ? ((Long) data.get("bossHits")).intValue() : 0;
-                    int easyTasks = data.get("easyTasks") != null ? ((Long) data.get("easyTasks")).intValue() : 0;
-                    int otherTasks = data.get("otherTasks") != null ? ((Long) data.get("otherTasks")).intValue() : 0;
-                    boolean noUnfinishedTasks = data.get("noUnfinishedTasks") != null && (Boolean) data.get("noUnfinishedTasks");
-                    int messageDays = data.get("messageDays") != null ? ((Long) data.get("messageDays")).intValue() : 0;
-
-
-                    MemberProgress memberProgress = new MemberProgress(
-                            username, storePurchases, bossHits, easyTasks,
-                            otherTasks, noUnfinishedTasks, messageDays
-                    );
-
-                    missionProgressList.add(memberProgress);
-                }
-                missionProgressAdapter.notifyDataSetChanged();
+        if (missionId.equals(trackedMissionId)) return;
+        stopTrackingMissionProgress();
+
+        trackedMissionId = missionId;
+        missionProgress.clear();
+        missionProgressAdapter.notifyDataSetChanged();
+
+        missionListener = allianceRepository.listenToMission(missionId, (doc, e) -> {
+            if (e != null) {
+                Toast.makeText(requireContext(), "Error loading mission progress", Toast.LENGTH_SHORT).show();
+                return;
             }
+            missionProgress.applyMission(doc, missionRowsListener);
+            updateMissionHeader();
+        });
 
-            @Override
-            public void onError(Exception e) {
+        memberProgressListener = allianceRepository.listenToMemberProgress(missionId, (snapshot, e) -> {
+            if (e != null) {
                 Toast.makeText(requireContext(), "Error loading mission progress", Toast.LENGTH_SHORT).show();
+                return;
             }
+            if (snapshot == null) return;
+
+            missionProgress.applyMemberChanges(snapshot.getDocumentChanges(), missionRowsListener);
+            updateMissionHeader();
         });
     }
 
+    private void stopTrackingMissionProgress() {
+        if (missionListener != null) {
+            missionListener.remove();
+            missionListener = null;
+        }
+        if (memberProgressListener != null) {
+            memberProgressListener.remove();
+            memberProgressListener = null;
+        }
+        trackedMissionId = null;
+    }
 
+    private void updateMissionHeader() {
+        tvMissionProgress.setText("Boss HP: " + missionProgress.getRemainingHp() + "/" + missionProgress.getBossHp()
+                + " | Ukupna šteta: " + missionProgress.getTotalDamage());
+    }
 
-
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        stopTrackingMissionProgress();
+    }
 
     private void setupMembersRecyclerView() {
         membersAdapter = new FindFriendsAdapter(membersList, null,
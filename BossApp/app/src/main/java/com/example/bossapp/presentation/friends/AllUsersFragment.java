@@ -1,9 +1,12 @@
 package com.example.bossapp.presentation.friends;
 
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 
@@ -20,17 +23,29 @@ import com.example.bossapp.data.repository.UserRepository;
 import com.example.bossapp.presentation.base.BaseFragment;
 import com.example.bossapp.presentation.profile.ProfileFragment;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class AllUsersFragment extends BaseFragment {
 
+    private static final int LOAD_MORE_THRESHOLD = 4;
+
     private RecyclerView rvUsers;
+    private EditText etSearch;
     private ProgressBar progressBar;
     private FindFriendsAdapter adapter;
     private List<User> usersList = new ArrayList<>();
 
+    // Korisnici učitani listanjem, čuvaju se dok su prikazani rezultati pretrage
+    private List<User> browsedUsers = new ArrayList<>();
+    private DocumentSnapshot lastUserDocument;
+    private boolean hasMoreUsers = true;
+    private boolean loadingUsers = false;
+    private boolean showingSearchResults = false;
+    private UserSearchController searchController;
+
     private UserRepository userRepository;
     private FriendRepository friendRepository;
     private String currentUserId;
@@ -55,11 +70,21 @@ public class AllUsersFragment extends BaseFragment {
         currentUserId = FirebaseAuth.getInstance().getCurrentUser().getUid();
 
         setupRecyclerView();
+        setupSearch();
         loadCurrentUser();
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (searchController != null) {
+            searchController.cancel();
+        }
+    }
+
     private void initViews(View view) {
         rvUsers = view.findViewById(R.id.rvUsers);
+        etSearch = view.findViewById(R.id.etSearch);
         progressBar = view.findViewById(R.id.progressBar);
     }
 
@@ -81,8 +106,57 @@ public class AllUsersFragment extends BaseFragment {
             }
         });
 
-        rvUsers.setLayoutManager(new GridLayoutManager(requireContext(), 2));
+        GridLayoutManager layoutManager = new GridLayoutManager(requireContext(), 2);
+        rvUsers.setLayoutManager(layoutManager);
         rvUsers.setAdapter(adapter);
+
+        rvUsers.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (!showingSearchResults && dy > 0 &&
+                        layoutManager.findLastVisibleItemPosition() >= usersList.size() - LOAD_MORE_THRESHOLD) {
+                    loadNextUsersPage();
+                }
+            }
+        });
+    }
+
+    private void setupSearch() {
+        searchController = new UserSearchController(friendRepository, currentUserId,
+                new UserSearchController.OnSearchResultsListener() {
+                    @Override
+                    public void onResults(String query, List<User> users) {
+                        showingSearchResults = true;
+                        progressBar.setVisibility(View.GONE);
+                        showUsers(users);
+                    }
+
+                    @Override
+                    public void onCleared() {
+                        showingSearchResults = false;
+                        showUsers(browsedUsers);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Toast.makeText(requireContext(),
+                                "Error searching users: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchController.onQueryChanged(s.toString());
+            }
+        });
     }
 
     private void loadCurrentUser() {
@@ -91,37 +165,56 @@ public class AllUsersFragment extends BaseFragment {
             public void onSuccess(User user) {
                 currentUser = user;
                 adapter.updateCurrentUser(user);
-                loadAllUsers();
+                if (lastUserDocument == null) loadNextUsersPage();
             }
 
             @Override
             public void onError(Exception e) {
                 Toast.makeText(requireContext(), "Error loading user data", Toast.LENGTH_SHORT).show();
-                loadAllUsers();
+                if (lastUserDocument == null) loadNextUsersPage();
             }
         });
     }
 
-    private void loadAllUsers() {
-        progressBar.setVisibility(View.VISIBLE);
+    private void loadNextUsersPage() {
+        if (loadingUsers || !hasMoreUsers) return;
+        loadingUsers = true;
+        if (browsedUsers.isEmpty()) {
+            progressBar.setVisibility(View.VISIBLE);
+        }
 
-        friendRepository.getAllUsers(currentUserId, new UserRepository.OnUsersLoadListener() {
-            @Override
-            public void onSuccess(List<User> users) {
-                progressBar.setVisibility(View.GONE);
-                usersList.clear();
-                usersList.addAll(users);
-                adapter.notifyDataSetChanged();
-            }
+        friendRepository.getUsersPage(currentUserId, lastUserDocument, FriendRepository.USERS_PAGE_SIZE,
+                new FriendRepository.OnUsersPageLoadListener() {
+                    @Override
+                    public void onSuccess(FriendRepository.UsersPage page) {
+                        loadingUsers = false;
+                        progressBar.setVisibility(View.GONE);
+                        lastUserDocument = page.lastDocument;
+                        hasMoreUsers = page.hasMore;
+                        browsedUsers.addAll(page.users);
 
-            @Override
-            public void onError(Exception e) {
-                progressBar.setVisibility(View.GONE);
-                Toast.makeText(requireContext(),
-                        "Error loading users: " + e.getMessage(),
-                        Toast.LENGTH_SHORT).show();
-            }
-        });
+                        if (!showingSearchResults) {
+                            int start = usersList.size();
+                            usersList.addAll(page.users);
+                            adapter.notifyItemRangeInserted(start, page.users.size());
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        loadingUsers = false;
+                        progressBar.setVisibility(View.GONE);
+                        Toast.makeText(requireContext(),
+                                "Error loading users: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
+
+    private void showUsers(List<User> users) {
+        usersList.clear();
+        usersList.addAll(users);
+        adapter.notifyDataSetChanged();
     }
 
     private void handleAddFriend(User user) {
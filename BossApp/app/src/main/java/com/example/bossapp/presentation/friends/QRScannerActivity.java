@@ -4,6 +4,8 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -14,19 +16,34 @@ import androidx.core.content.ContextCompat;
 import com.example.bossapp.R;
 import com.example.bossapp.business.QRCodeManager;
 import com.google.android.material.appbar.MaterialToolbar;
+import com.google.zxing.BarcodeFormat;
 import com.journeyapps.barcodescanner.BarcodeCallback;
 import com.journeyapps.barcodescanner.BarcodeResult;
+import com.journeyapps.barcodescanner.BarcodeView;
 import com.journeyapps.barcodescanner.DecoratedBarcodeView;
+import com.journeyapps.barcodescanner.DefaultDecoderFactory;
+import com.journeyapps.barcodescanner.Size;
+import com.journeyapps.barcodescanner.camera.CameraSettings;
+
+import java.util.Collections;
 
 public class QRScannerActivity extends AppCompatActivity {
 
     private static final int CAMERA_PERMISSION_REQUEST = 100;
     public static final String EXTRA_USER_ID = "extra_user_id";
 
+    // Dekodira se samo kvadrat u sredini kadra, ROI_FRACTION kraće strane ekrana
+    private static final float ROI_FRACTION = 0.7f;
+    // Isti neispravan kod se ne prijavljuje ponovo dok ne prođe ovo vreme
+    private static final long INVALID_QR_COOLDOWN_MS = 2000;
+
     private DecoratedBarcodeView barcodeView;
     private MaterialToolbar toolbar;
     private boolean isScanning = false;
 
+    private String lastRejectedContent;
+    private long lastRejectedAt;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -36,9 +53,29 @@ public class QRScannerActivity extends AppCompatActivity {
         barcodeView = findViewById(R.id.barcode_scanner);
 
         setupToolbar();
+        setupDecoder();
         checkCameraPermission();
     }
 
+    /**
+     * Biblioteka dekodira na sopstvenom decoder thread-u i traži sledeći frame tek kada
+     * završi prethodni, pa se frame-ovi ne gomilaju. Ovde se dekodiranje ograničava na
+     * QR_CODE format i na isečak u sredini kadra.
+     */
+    private void setupDecoder() {
+        BarcodeView preview = barcodeView.getBarcodeView();
+
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        int roiSize = (int) (Math.min(metrics.widthPixels, metrics.heightPixels) * ROI_FRACTION);
+        preview.setFramingRectSize(new Size(roiSize, roiSize));
+
+        preview.setDecoderFactory(new DefaultDecoderFactory(Collections.singletonList(BarcodeFormat.QR_CODE)));
+
+        CameraSettings settings = preview.getCameraSettings();
+        settings.setContinuousFocusEnabled(true);
+        preview.setCameraSettings(settings);
+    }
+
     private void setupToolbar() {
         toolbar.setTitle("Scan QR Code");
         toolbar.setNavigationOnClickListener(v -> finish());
@@ -71,34 +108,29 @@ public class QRScannerActivity extends AppCompatActivity {
     }
 
     private void handleQRCodeScanned(String qrContent) {
-        // Stop scanning
-        barcodeView.pause();
-        isScanning = false;
+        if (!isScanning) return;
 
-        // Validate QR code
+        // Neispravan kod ostaje u kadru - ne pauziraj kameru i ne ponavljaj poruku za svaki frame
         if (!QRCodeManager.isValidUserQR(qrContent)) {
-            Toast.makeText(this, "Invalid QR code. Please scan a BossApp user QR code.",
-                    Toast.LENGTH_LONG).show();
-            // Allow scanning again
-            isScanning = false;
-            barcodeView.resume();
+            long now = SystemClock.elapsedRealtime();
+            if (!qrContent.equals(lastRejectedContent) || now - lastRejectedAt > INVALID_QR_COOLDOWN_MS) {
+                lastRejectedContent = qrContent;
+                lastRejectedAt = now;
+                Toast.makeText(this, "Invalid QR code. Please scan a BossApp user QR code.",
+                        Toast.LENGTH_LONG).show();
+            }
             return;
         }
 
-        // Extract user ID
-        String scannedUserId = QRCodeManager.extractUserIdFromQR(qrContent);
+        // Stop scanning
+        isScanning = false;
+        barcodeView.pause();
 
-        if (scannedUserId != null) {
-            // Return the scanned user ID to the calling activity
-            Intent resultIntent = new Intent();
-            resultIntent.putExtra(EXTRA_USER_ID, scannedUserId);
-            setResult(RESULT_OK, resultIntent);
-            finish();
-        } else {
-            Toast.makeText(this, "Failed to read QR code", Toast.LENGTH_SHORT).show();
-            isScanning = false;
-            barcodeView.resume();
-        }
+        // Return the scanned user ID to the calling activity
+        Intent resultIntent = new Intent();
+        resultIntent.putExtra(EXTRA_USER_ID, QRCodeManager.extractUserIdFromQR(qrContent));
+        setResult(RESULT_OK, resultIntent);
+        finish();
     }
 
     @Override
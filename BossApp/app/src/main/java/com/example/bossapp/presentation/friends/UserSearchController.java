@@ -0,0 +1,78 @@
+package com.example.bossapp.presentation.friends;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.bossapp.data.model.User;
+import com.example.bossapp.data.repository.FriendRepository;
+import com.example.bossapp.data.repository.UserRepository;
+
+import java.util.List;
+
+/**
+ * Šalje pretragu tek kada korisnik prestane da kuca DEBOUNCE_MS.
+ * Firestore upit ne može da se prekine, pa se odgovor na zastareli upit
+ * (posle kog je već otkucano nešto novo) samo odbacuje.
+ */
+public class UserSearchController {
+    private static final long DEBOUNCE_MS = 300;
+
+    private final FriendRepository friendRepository;
+    private final String currentUserId;
+    private final OnSearchResultsListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Runnable pendingSearch;
+    private int generation;
+
+    public interface OnSearchResultsListener {
+        void onResults(String query, List<User> users);
+        void onCleared();
+        void onError(Exception e);
+    }
+
+    public UserSearchController(FriendRepository friendRepository, String currentUserId,
+                                OnSearchResultsListener listener) {
+        this.friendRepository = friendRepository;
+        this.currentUserId = currentUserId;
+        this.listener = listener;
+    }
+
+    public void onQueryChanged(String query) {
+        cancel();
+
+        String trimmed = query.trim();
+        if (trimmed.isEmpty()) {
+            listener.onCleared();
+            return;
+        }
+
+        int requestGeneration = generation;
+        pendingSearch = () -> friendRepository.searchUsersByUsername(trimmed, currentUserId,
+                new UserRepository.OnUsersLoadListener() {
+                    @Override
+                    public void onSuccess(List<User> users) {
+                        if (requestGeneration == generation) {
+                            listener.onResults(trimmed, users);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        if (requestGeneration == generation) {
+                            listener.onError(e);
+                        }
+                    }
+                });
+        handler.postDelayed(pendingSearch, DEBOUNCE_MS);
+    }
+
+    // Odbacuje zakazanu pretragu i odgovore na već poslate upite
+    public void cancel() {
+        if (pendingSearch != null) {
+            handler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        generation++;
+    }
+}
@@ -28,6 +28,8 @@ import java.util.List;
 
 public class HomeFragment extends BaseFragment {
 
+    private static final int SUGGESTIONS_LIMIT = 10;
+
     private RecyclerView rvFindFriends;
     private TextView tvSeeAll;
     private FindFriendsAdapter friendsAdapter;
@@ -109,22 +111,24 @@ public class HomeFragment extends BaseFragment {
     }
 
     private void loadUserSuggestions() {
-        friendRepository.getAllUsers(currentUserId, new UserRepository.OnUsersLoadListener() {
-            @Override
-            public void onSuccess(List<User> users) {
-                suggestionsList.clear();
-                int limit = Math.min(users.size(), 10);
-                suggestionsList.addAll(users.subList(0, limit));
-                friendsAdapter.notifyDataSetChanged();
-            }
+        // +1 jer se trenutni korisnik izbacuje iz strane
+        friendRepository.getUsersPage(currentUserId, null, SUGGESTIONS_LIMIT + 1,
+                new FriendRepository.OnUsersPageLoadListener() {
+                    @Override
+                    public void onSuccess(FriendRepository.UsersPage page) {
+                        suggestionsList.clear();
+                        int limit = Math.min(page.users.size(), SUGGESTIONS_LIMIT);
+                        suggestionsList.addAll(page.users.subList(0, limit));
+                        friendsAdapter.notifyDataSetChanged();
+                    }
 
-            @Override
-            public void onError(Exception e) {
-                Toast.makeText(requireContext(),
-                        "Error loading suggestions",
-                        Toast.LENGTH_SHORT).show();
-            }
-        });
+                    @Override
+                    public void onError(Exception e) {
+                        Toast.makeText(requireContext(),
+                                "Error loading suggestions",
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
 
     private void handleAddFriend(User user) {
@@ -22,6 +22,7 @@ import com.example.bossapp.data.model.FriendRequest;
 import com.example.bossapp.data.model.User;
 import com.example.bossapp.data.repository.AllianceRepository;
 import com.example.bossapp.data.repository.FriendRepository;
+import com.example.bossapp.data.repository.NotificationRepository;
 import com.example.bossapp.data.repository.UserRepository;
 import com.example.bossapp.presentation.alliance.AllianceChatFragment;
 import com.example.bossapp.presentation.alliance.AllianceInvitationAdapter;
@@ -59,7 +60,15 @@ public class NotificationsFragment extends BaseFragment {
     private User currentUser;
     private Alliance currentAlliance;
 
+    private NotificationRepository notificationRepository;
+    private NotificationRepository.ReadCursors readCursors = new NotificationRepository.ReadCursors();
+    private List<DocumentSnapshot> notificationDocs = new ArrayList<>();
     private ListenerRegistration allianceNotificationListener;
+    private ListenerRegistration readCursorListener;
+    private ListenerRegistration friendRequestListener;
+    private ListenerRegistration invitationListener;
+    // Odbacuje rezultat provere pozivnica iz starijeg snapshot-a
+    private int invitationGeneration;
 
     @Nullable
     @Override
@@ -78,9 +87,11 @@ public class NotificationsFragment extends BaseFragment {
         friendRepository = new FriendRepository();
         allianceRepository = new AllianceRepository();
         userRepository = new UserRepository();
+        notificationRepository = new NotificationRepository();
 
         setupRecyclerViews();
         loadCurrentUser();
+        startListeningForRequests();
         startListeningForAllianceNotifications();
     }
 
@@ -90,6 +101,15 @@ public class NotificationsFragment extends BaseFragment {
         if (allianceNotificationListener != null) {
             allianceNotificationListener.remove();
         }
+        if (readCursorListener != null) {
+            readCursorListener.remove();
+        }
+        if (friendRequestListener != null) {
+            friendRequestListener.remove();
+        }
+        if (invitationListener != null) {
+            invitationListener.remove();
+        }
     }
 
     private void initViews(View view) {
@@ -160,131 +180,172 @@ public class NotificationsFragment extends BaseFragment {
         Log.d(TAG, "Opening chat for alliance: " + notification.getAllianceId());
 
         // First dismiss the notification
-        FirebaseFirestore.getInstance()
-                .collection("notifications")
-                .document(notification.getNotificationId())
-                .update("read", true)
-                .addOnSuccessListener(aVoid -> {
-                    // Load alliance details to get alliance name
-                    FirebaseFirestore.getInstance()
-                            .collection("alliances")
-                            .document(notification.getAllianceId())
-                            .get()
-                            .addOnSuccessListener(doc -> {
-                                if (doc.exists()) {
-                                    String allianceName = doc.getString("allianceName");
-
-                                    Log.d(TAG, "Opening chat for: " + allianceName);
-
-                                    // Open chat
-                                    AllianceChatFragment chatFragment = AllianceChatFragment.newInstance(
-                                            notification.getAllianceId(),
-                                            allianceName != null ? allianceName : "Alliance Chat");
-
-                                    requireActivity().getSupportFragmentManager()
-                                            .beginTransaction()
-                                            .replace(R.id.fragmentContainer, chatFragment)
-                                            .addToBackStack(null)
-                                            .commit();
-                                } else {
-                                    Toast.makeText(requireContext(),
-                                            "Alliance no longer exists",
-                                            Toast.LENGTH_SHORT).show();
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "Error loading alliance", e);
+        markNotificationRead(notification, new NotificationRepository.OnNotificationActionListener() {
+            @Override
+            public void onSuccess() {
+                // Load alliance details to get alliance name
+                FirebaseFirestore.getInstance()
+                        .collection("alliances")
+                        .document(notification.getAllianceId())
+                        .get()
+                        .addOnSuccessListener(doc -> {
+                            if (doc.exists()) {
+                                String allianceName = doc.getString("allianceName");
+
+                                Log.d(TAG, "Opening chat for: " + allianceName);
+
+                                // Open chat
+                                AllianceChatFragment chatFragment = AllianceChatFragment.newInstance(
+                                        notification.getAllianceId(),
+                                        allianceName != null ? allianceName : "Alliance Chat");
+
+                                requireActivity().getSupportFragmentManager()
+                                        .beginTransaction()
+                                        .replace(R.id.fragmentContainer, chatFragment)
+                                        .addToBackStack(null)
+                                        .commit();
+                            } else {
                                 Toast.makeText(requireContext(),
-                                        "Error loading alliance: " + e.getMessage(),
+                                        "Alliance no longer exists",
                                         Toast.LENGTH_SHORT).show();
-                            });
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error dismissing notification", e);
-                    Toast.makeText(requireContext(),
-                            "Error dismissing notification: " + e.getMessage(),
-                            Toast.LENGTH_SHORT).show();
-                });
+                            }
+                        })
+                        .addOnFailureListener(e -> {
+                            Log.e(TAG, "Error loading alliance", e);
+                            Toast.makeText(requireContext(),
+                                    "Error loading alliance: " + e.getMessage(),
+                                    Toast.LENGTH_SHORT).show();
+                        });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error dismissing notification", e);
+                Toast.makeText(requireContext(),
+                        "Error dismissing notification: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     private void startListeningForAllianceNotifications() {
         String currentUserId = FirebaseAuth.getInstance().getCurrentUser().getUid();
 
         Log.d(TAG, "Starting to listen for alliance notifications");
 
-        allianceNotificationListener = FirebaseFirestore.getInstance()
-                .collection("notifications")
-                .whereEqualTo("userId", currentUserId)
-                .whereEqualTo("read", false)
-                .addSnapshotListener((querySnapshot, error) -> {
-                    if (error != null) {
-                        Log.e(TAG, "Error listening to notifications", error);
-                        return;
-                    }
-
-                    if (querySnapshot != null) {
-                        allianceNotificationList.clear();
-
-                        for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                            String type = doc.getString("type");
-
-                            // OVDE JE VAŽNO - alliance_message
-                            if ("alliance_accepted".equals(type) ||
-                                    "alliance_declined".equals(type) ||
-                                    "alliance_message".equals(type)) {
-
-                                AllianceNotification notification = new AllianceNotification();
-                                notification.setNotificationId(doc.getId());
-                                notification.setType(type);
-                                notification.setUserId(doc.getString("userId"));
-
-                                if ("alliance_accepted".equals(type)) {
-                                    notification.setUsername(doc.getString("acceptedUsername"));
-                                    notification.setAllianceName(doc.getString("allianceName"));
-                                } else if ("alliance_declined".equals(type)) {
-                                    notification.setUsername(doc.getString("declinedUsername"));
-                                    notification.setAllianceName(doc.getString("allianceName"));
-                                } else if ("alliance_message".equals(type)) {
-                                    // OVO JE ZA PORUKE!
-                                    notification.setSenderUsername(doc.getString("senderUsername"));
-                                    notification.setMessageText(doc.getString("messageText"));
-                                    notification.setAllianceId(doc.getString("allianceId"));
-                                }
-
-                                notification.setMessage(doc.getString("message"));
-
-                                Long timestampLong = doc.getLong("timestamp");
-                                if (timestampLong != null) {
-                                    notification.setTimestamp(timestampLong);
-                                }
-
-                                Boolean readBoolean = doc.getBoolean("read");
-                                if (readBoolean != null) {
-                                    notification.setRead(readBoolean);
-                                }
-
-                                allianceNotificationList.add(notification);
+        // Kursor "sve pročitano" ograničava upit, a kursori po savezu i tipu se primenjuju lokalno
+        notificationRepository.getReadCursors(currentUserId, new NotificationRepository.OnReadCursorsLoadListener() {
+            @Override
+            public void onSuccess(NotificationRepository.ReadCursors cursors) {
+                if (getView() == null) return;
+                readCursors = cursors;
+
+                allianceNotificationListener = notificationRepository.listenToNotifications(
+                        currentUserId, cursors.getAllRead(), (querySnapshot, error) -> {
+                            if (error != null) {
+                                Log.e(TAG, "Error listening to notifications", error);
+                                return;
                             }
-                        }
 
-                        allianceNotificationList.sort((n1, n2) ->
-                                Long.compare(n2.getTimestamp(), n1.getTimestamp()));
+                            if (querySnapshot != null) {
+                                notificationDocs = querySnapshot.getDocuments();
+                                showUnreadAllianceNotifications();
+                            }
+                        });
 
-                        allianceNotificationAdapter.notifyDataSetChanged();
-                        updateEmptyState();
-                    }
+                readCursorListener = notificationRepository.listenToReadCursors(currentUserId, (doc, error) -> {
+                    if (error != null || doc == null) return;
+                    readCursors = NotificationRepository.ReadCursors.fromSnapshot(doc);
+                    showUnreadAllianceNotifications();
                 });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error listening to notifications", e);
+            }
+        });
+    }
+
+    private void showUnreadAllianceNotifications() {
+        allianceNotificationList.clear();
+
+        for (DocumentSnapshot doc : notificationDocs) {
+            String type = doc.getString("type");
+
+            // OVDE JE VAŽNO - alliance_message
+            if ("alliance_accepted".equals(type) ||
+                    "alliance_declined".equals(type) ||
+                    "alliance_message".equals(type)) {
+
+                Long timestampLong = doc.getLong("timestamp");
+                long timestamp = timestampLong != null ? timestampLong : 0;
+                if (!readCursors.isUnread(doc)) {
+                    continue;
+                }
+
+                AllianceNotification notification = new AllianceNotification();
+                notification.setNotificationId(doc.getId());
+                notification.setType(type);
+                notification.setUserId(doc.getString("userId"));
+                notification.setAllianceId(doc.getString("allianceId"));
+                notification.setTimestamp(timestamp);
+
+                if ("alliance_accepted".equals(type)) {
+                    notification.setUsername(doc.getString("acceptedUsername"));
+                    notification.setAllianceName(doc.getString("allianceName"));
+                } else if ("alliance_declined".equals(type)) {
+                    notification.setUsername(doc.getString("declinedUsername"));
+                    notification.setAllianceName(doc.getString("allianceName"));
+                } else if ("alliance_message".equals(type)) {
+                    // OVO JE ZA PORUKE!
+                    notification.setSenderUsername(doc.getString("senderUsername"));
+                    notification.setMessageText(doc.getString("messageText"));
+                    Long unreadCount = doc.getLong("unreadCount");
+                    notification.setUnreadCount(unreadCount != null ? unreadCount.intValue() : 1);
+                }
+
+                if ("alliance_message".equals(type) && notification.getUnreadCount() > 1) {
+                    // Jedna notifikacija po savezu skuplja sve nepročitane poruke
+                    notification.setMessage(notification.getUnreadCount() +
+                            " nepročitanih poruka, poslednja: " + doc.getString("message"));
+                } else {
+                    notification.setMessage(doc.getString("message"));
+                }
+
+                allianceNotificationList.add(notification);
+            }
+        }
+
+        allianceNotificationList.sort((n1, n2) ->
+                Long.compare(n2.getTimestamp(), n1.getTimestamp()));
+
+        allianceNotificationAdapter.notifyDataSetChanged();
+        updateEmptyState();
+
+        // Pročitane notifikacije starije od najstarije nepročitane više ne moraju u upit
+        String currentUserId = FirebaseAuth.getInstance().getCurrentUser().getUid();
+        notificationRepository.advanceAllRead(currentUserId, notificationDocs, readCursors);
     }
+
+    private void markNotificationRead(AllianceNotification notification,
+                                      NotificationRepository.OnNotificationActionListener listener) {
+        String currentUserId = FirebaseAuth.getInstance().getCurrentUser().getUid();
+        notificationRepository.markRead(currentUserId, notification.getNotificationId(), notification.getType(),
+                notification.getTimestamp(), listener);
+    }
+
     private void handleDismissNotification(AllianceNotification notification) {
-        FirebaseFirestore.getInstance()
-                .collection("notifications")
-                .document(notification.getNotificationId())
-                .update("read", true)
-                .addOnSuccessListener(aVoid -> {
-                    Toast.makeText(requireContext(), "Notification dismissed", Toast.LENGTH_SHORT).show();
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(requireContext(), "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
+        markNotificationRead(notification, new NotificationRepository.OnNotificationActionListener() {
+            @Override
+            public void onSuccess() {
+                Toast.makeText(requireContext(), "Notification dismissed", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(requireContext(), "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
 
@@ -300,8 +361,7 @@ public class NotificationsFragment extends BaseFragment {
 
             @Override
             public void onError(Exception e) {
-                loadFriendRequests();
-                loadAllianceInvitations();
+                currentUser = null;
             }
         });
     }
@@ -313,63 +373,64 @@ public class NotificationsFragment extends BaseFragment {
             @Override
             public void onSuccess(Alliance alliance) {
                 currentAlliance = alliance;
-                loadFriendRequests();
-                loadAllianceInvitations();
             }
 
             @Override
             public void onError(Exception e) {
                 currentAlliance = null;
-                loadFriendRequests();
-                loadAllianceInvitations();
             }
         });
     }
 
-    private void loadFriendRequests() {
+    // Zahtevi i pozivnice dele listenere sa MainActivity preko RealtimeHub-a i osvežavaju se sami
+    private void startListeningForRequests() {
         String currentUserId = FirebaseAuth.getInstance().getCurrentUser().getUid();
 
-        friendRepository.getPendingRequests(currentUserId,
-                new FriendRepository.OnFriendRequestsLoadListener() {
-                    @Override
-                    public void onSuccess(List<FriendRequest> requests) {
-                        friendRequestList.clear();
-                        friendRequestList.addAll(requests);
-                        friendRequestAdapter.notifyDataSetChanged();
-                        updateEmptyState();
-                    }
+        friendRequestListener = friendRepository.listenToFriendRequests(currentUserId, (snapshots, error) -> {
+            if (error != null) {
+                Toast.makeText(requireContext(),
+                        "Error loading friend requests: " + error.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+                updateEmptyState();
+                return;
+            }
+            if (snapshots == null) return;
 
-                    @Override
-                    public void onError(Exception e) {
-                        Toast.makeText(requireContext(),
-                                "Error loading friend requests: " + e.getMessage(),
-                                Toast.LENGTH_SHORT).show();
-                        updateEmptyState();
-                    }
-                });
-    }
+            friendRequestList.clear();
+            friendRequestList.addAll(FriendRepository.toFriendRequests(snapshots.getDocuments()));
+            friendRequestAdapter.notifyDataSetChanged();
+            updateEmptyState();
+        });
 
-    private void loadAllianceInvitations() {
-        String currentUserId = FirebaseAuth.getInstance().getCurrentUser().getUid();
+        invitationListener = allianceRepository.listenToPendingInvitations(currentUserId, (snapshots, error) -> {
+            if (error != null) {
+                Toast.makeText(requireContext(),
+                        "Error loading alliance invitations: " + error.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+                updateEmptyState();
+                return;
+            }
+            if (snapshots == null) return;
 
-        allianceRepository.getPendingInvitations(currentUserId,
-                new AllianceRepository.OnInvitationsLoadListener() {
-                    @Override
-                    public void onSuccess(List<AllianceInvitation> invitations) {
-                        allianceInvitationList.clear();
-                        allianceInvitationList.addAll(invitations);
-                        allianceInvitationAdapter.notifyDataSetChanged();
-                        updateEmptyState();
-                    }
+            int generation = ++invitationGeneration;
+            allianceRepository.loadValidInvitations(snapshots.getDocuments(),
+                    new AllianceRepository.OnInvitationsLoadListener() {
+                        @Override
+                        public void onSuccess(List<AllianceInvitation> invitations) {
+                            if (getView() == null || generation != invitationGeneration) return;
+                            allianceInvitationList.clear();
+                            allianceInvitationList.addAll(invitations);
+                            allianceInvitationAdapter.notifyDataSetChanged();
+                            updateEmptyState();
+                        }
 
-                    @Override
-                    public void onError(Exception e) {
-                        Toast.makeText(requireContext(),
-                                "Error loading alliance invitations: " + e.getMessage(),
-                                Toast.LENGTH_SHORT).show();
-                        updateEmptyState();
-                    }
-                });
+                        @Override
+                        public void onError(Exception e) {
+                            if (getView() == null) return;
+                            updateEmptyState();
+                        }
+                    });
+        });
     }
 
     private void updateEmptyState() {
@@ -401,7 +462,6 @@ public class NotificationsFragment extends BaseFragment {
                         Toast.makeText(requireContext(),
                                 "Friend request accepted!",
                                 Toast.LENGTH_SHORT).show();
-                        loadFriendRequests();
                     }
 
                     @Override
@@ -421,7 +481,6 @@ public class NotificationsFragment extends BaseFragment {
                         Toast.makeText(requireContext(),
                                 "Friend request rejected",
                                 Toast.LENGTH_SHORT).show();
-                        loadFriendRequests();
                     }
 
                     @Override
@@ -506,7 +565,6 @@ public class NotificationsFragment extends BaseFragment {
 
                         Toast.makeText(requireContext(), message, Toast.LENGTH_SHORT).show();
                         loadCurrentUser();
-                        loadAllianceInvitations();
                     }
 
                     @Override
@@ -527,7 +585,6 @@ public class NotificationsFragment extends BaseFragment {
                         Toast.makeText(requireContext(),
                                 "Alliance invitation declined",
                                 Toast.LENGTH_SHORT).show();
-                        loadAllianceInvitations();
                     }
 
                     @Override
@@ -502,34 +502,23 @@ public class ProfileFragment extends BaseFragment {
     }
 
     private void generateAndDisplayQRCode() {
-        new Thread(() -> {
-            Bitmap qrBitmap = QRCodeManager.generateQRCode(displayUserId);
-
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(() -> {
-                    if (qrBitmap != null) {
-                        ivQRCode.setImageBitmap(qrBitmap);
-                        Log.d(TAG, "QR code generated successfully");
-                    } else {
-                        Log.e(TAG, "Error generating QR code");
-                        Toast.makeText(requireContext(),
-                                "Error generating QR code",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
+        QRCodeManager.loadQRCode(requireContext(), displayUserId, new QRCodeManager.OnQRCodeLoadListener() {
+            @Override
+            public void onSuccess(Bitmap bitmap) {
+                if (!isAdded()) return;
+                ivQRCode.setImageBitmap(bitmap);
+                Log.d(TAG, "QR code loaded");
             }
-        }).start();
-    }
 
-    private int calculateXPForNextLevel(int currentLevel) {
-        if (currentLevel == 0) {
-            return 200;
-        }
-        int previousXP = 200;
-        for (int i = 1; i <= currentLevel; i++) {
-            previousXP = (int) Math.ceil((previousXP * 2 + previousXP / 2.0) / 100.0) * 100;
-        }
-        return previousXP;
+            @Override
+            public void onError(String error) {
+                if (!isAdded()) return;
+                Log.e(TAG, "Error generating QR code: " + error);
+                Toast.makeText(requireContext(),
+                        "Error generating QR code",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     @Override
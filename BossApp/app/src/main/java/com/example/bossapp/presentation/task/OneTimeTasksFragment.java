@@ -10,15 +10,22 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.bossapp.R;
 import com.example.bossapp.business.TaskManager;
 import com.example.bossapp.data.model.Task;
+import com.example.bossapp.data.repository.TaskRepository;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
 import java.util.*;
 
 public class OneTimeTasksFragment extends Fragment {
+    private static final int PAGE_SIZE = 20;
+
     private RecyclerView recyclerView;
     private TaskAdapter taskAdapter;
     private List<Task> tasks = new ArrayList<>();
     private TaskManager taskManager;
     private String userId;
+    private DocumentSnapshot cursor;
+    // Povećava se pri svakom ponovnom učitavanju; stranice starih upita se odbacuju
+    private int loadGeneration;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container,
@@ -29,6 +36,7 @@ public class OneTimeTasksFragment extends Fragment {
 
         taskAdapter = new TaskAdapter(tasks);
         recyclerView.setAdapter(taskAdapter);
+        taskAdapter.attachPaging(recyclerView, () -> loadPage(false));
 
         taskManager = new TaskManager();
         userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
@@ -38,18 +46,30 @@ public class OneTimeTasksFragment extends Fragment {
     }
 
     public void loadTasks() {
-        taskManager.getUserTasks(userId, new TaskManager.OnTasksLoadListener() {
+        cursor = null;
+        loadGeneration++;
+        loadPage(true);
+    }
+
+    private void loadPage(boolean firstPage) {
+        int requestGeneration = loadGeneration;
+        taskManager.getUserTasksPage(userId, TaskRepository.TaskFilter.ONE_TIME, cursor, PAGE_SIZE,
+                new TaskManager.OnTasksPageLoadListener() {
             @Override
-            public void onSuccess(List<Task> loadedTasks) {
-                tasks.clear();
-                for (Task t : loadedTasks) {
-                    if (!t.isRepeating()) tasks.add(t);
+            public void onSuccess(TaskRepository.TaskPage page) {
+                if (requestGeneration != loadGeneration) return;
+                cursor = page.cursor;
+                if (firstPage) {
+                    taskAdapter.setFirstPage(page.tasks, page.hasMore);
+                } else {
+                    taskAdapter.appendPage(page.tasks, page.hasMore);
                 }
-                taskAdapter.notifyDataSetChanged();
             }
 
             @Override
             public void onError(String message) {
+                if (requestGeneration != loadGeneration) return;
+                taskAdapter.onPageLoadFailed();
                 Toast.makeText(getContext(), "Error: " + message, Toast.LENGTH_SHORT).show();
             }
         });
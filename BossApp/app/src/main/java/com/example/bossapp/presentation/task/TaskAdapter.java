@@ -10,6 +10,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.bossapp.R;
@@ -24,14 +25,38 @@ import java.util.Locale;
 
 public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder> {
 
+    private static final int LOAD_MORE_THRESHOLD = 5;
+
     private final List<Task> tasks;
+    private RecyclerView pagedRecyclerView;
+    private OnLoadMoreListener loadMoreListener;
+    private boolean loadingMore = false;
+    private boolean hasMore = false;
     private final SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yyyy HH:mm", Locale.getDefault());
     private final TaskManager taskManager = new TaskManager();
 
+    public interface OnLoadMoreListener {
+        void onLoadMore();
+    }
+
     public TaskAdapter(List<Task> tasks) {
         this.tasks = tasks;
     }
 
+    /**
+     * Uključuje učitavanje sledeće stranice kada korisnik dođe blizu kraja liste.
+     */
+    public void attachPaging(RecyclerView recyclerView, OnLoadMoreListener listener) {
+        this.pagedRecyclerView = recyclerView;
+        this.loadMoreListener = listener;
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                checkLoadMore();
+            }
+        });
+    }
+
     @NonNull
     @Override
     public TaskViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -57,6 +82,49 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
     }
 
 
+    public void setFirstPage(List<Task> page, boolean hasMore) {
+        this.tasks.clear();
+        this.tasks.addAll(page);
+        this.hasMore = hasMore;
+        this.loadingMore = false;
+        notifyDataSetChanged();
+        schedulePagingCheck();
+    }
+
+    public void appendPage(List<Task> page, boolean hasMore) {
+        int start = tasks.size();
+        tasks.addAll(page);
+        this.hasMore = hasMore;
+        this.loadingMore = false;
+        notifyItemRangeInserted(start, page.size());
+        schedulePagingCheck();
+    }
+
+    public void onPageLoadFailed() {
+        loadingMore = false;
+    }
+
+    private void schedulePagingCheck() {
+        // Ako prva stranica ne popuni ekran, nema skrolovanja koje bi tražilo sledeću
+        if (pagedRecyclerView != null) {
+            pagedRecyclerView.post(this::checkLoadMore);
+        }
+    }
+
+    private void checkLoadMore() {
+        if (loadingMore || !hasMore || loadMoreListener == null || pagedRecyclerView == null) return;
+
+        RecyclerView.LayoutManager layoutManager = pagedRecyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) return;
+
+        int lastVisible = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+        if (lastVisible >= getItemCount() - LOAD_MORE_THRESHOLD) {
+            loadingMore = true;
+            loadMoreListener.onLoadMore();
+        }
+    }
+
+
     class TaskViewHolder extends RecyclerView.ViewHolder {
         TextView tvName, tvStatus, tvDate;
 
@@ -10,35 +10,50 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.bossapp.R;
-import com.example.bossapp.business.TaskManager;
+import com.example.bossapp.business.EpochDays;
 import com.example.bossapp.data.model.Category;
-import com.example.bossapp.data.model.EventDecorator;
 import com.example.bossapp.data.model.Task;
+import com.example.bossapp.data.repository.TaskRepository;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.prolificinteractive.materialcalendarview.CalendarDay;
 import com.prolificinteractive.materialcalendarview.MaterialCalendarView;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TaskCalendarActivity extends AppCompatActivity {
 
-    private TaskManager taskManager;
+    // Kalendar prikazuje i dane susednih meseci
+    private static final int VISIBLE_PADDING_DAYS = 7;
+    // Indeks pokriva i susedne mesece, pa listanje za mesec ne razvija zadatke ponovo
+    private static final int INDEX_MARGIN_DAYS = 31;
+
+    private TaskRepository taskRepository;
     private String userId;
-    private List<Task> tasks = new ArrayList<>();
     private RecyclerView rvTasks;
     private TaskAdapter adapter;
     private MaterialCalendarView calendarView;
 
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+    private ListenerRegistration tasksListener;
+    private TaskDayIndex dayIndex;
+    private boolean initialSnapshotHandled = false;
+    private CalendarDay selectedDay;
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_task_calendar);
 
-        taskManager = new TaskManager();
+        taskRepository = new TaskRepository();
         userId = FirebaseAuth.getInstance().getUid();
 
         rvTasks = findViewById(R.id.rvTasksForDate);
@@ -48,87 +63,170 @@ public class TaskCalendarActivity extends AppCompatActivity {
 
         calendarView = findViewById(R.id.calendarView);
 
-        taskManager.getUserTasks(userId, new TaskManager.OnTasksLoadListener() {
-            @Override
-            public void onSuccess(List<Task> loadedTasks) {
-                tasks.clear();
-                tasks.addAll(loadedTasks);
-                markTasksInCalendar(loadedTasks);
+        tasksListener = taskRepository.listenToUserTasks(userId, (snapshot, e) -> {
+            if (e != null) {
+                Toast.makeText(TaskCalendarActivity.this, "Greška pri učitavanju zadataka: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                return;
             }
-
-            @Override
-            public void onError(String message) {
-                Toast.makeText(TaskCalendarActivity.this, "Greška pri učitavanju zadataka: " + message, Toast.LENGTH_SHORT).show();
+            if (snapshot == null) return;
+
+            if (!initialSnapshotHandled) {
+                // Prvi snapshot: deserijalizacija i razvijanje indeksa se rade u pozadini
+                initialSnapshotHandled = true;
+                List<DocumentSnapshot> docs = new ArrayList<>(snapshot.getDocuments());
+                long[] visible = visibleRange();
+                long indexFrom = visible[0] - INDEX_MARGIN_DAYS;
+                long indexTo = visible[1] + INDEX_MARGIN_DAYS;
+                indexExecutor.execute(() -> {
+                    List<Task> loadedTasks = new ArrayList<>(docs.size());
+                    for (DocumentSnapshot doc : docs) {
+                        Task task = toTask(doc);
+                        if (task != null) loadedTasks.add(task);
+                    }
+                    TaskDayIndex built = TaskDayIndex.build(loadedTasks, indexFrom, indexTo);
+                    runOnUiThread(() -> onIndexBuilt(built));
+                });
+                return;
             }
-        });
 
-        calendarView.setOnDateChangedListener((widget, date, selected) -> {
-            List<Task> selectedTasks = new ArrayList<>();
-            for (Task task : tasks) {
-                if (task.getExecutionTime() != null) {
-                    Calendar cal = Calendar.getInstance();
-                    cal.setTime(task.getExecutionTime().toDate());
-                    if (cal.get(Calendar.YEAR) == date.getYear() &&
-                            (cal.get(Calendar.MONTH) + 1) == date.getMonth() &&
-                            cal.get(Calendar.DAY_OF_MONTH) == date.getDay()) {
-                        selectedTasks.add(task);
+            // Isti executor čuva redosled: izmene stižu na main thread posle izgrađenog indeksa
+            List<DocumentChange> changes = new ArrayList<>(snapshot.getDocumentChanges());
+            indexExecutor.execute(() -> {
+                List<String> removedIds = new ArrayList<>();
+                List<Task> changedTasks = new ArrayList<>();
+                for (DocumentChange change : changes) {
+                    if (change.getType() == DocumentChange.Type.REMOVED) {
+                        removedIds.add(change.getDocument().getId());
+                    } else {
+                        Task task = toTask(change.getDocument());
+                        if (task != null) changedTasks.add(task);
                     }
                 }
-            }
-            adapter.updateTasks(selectedTasks);
+                runOnUiThread(() -> applyChanges(removedIds, changedTasks));
+            });
+        });
+
+        calendarView.setOnDateChangedListener((widget, date, selected) -> {
+            selectedDay = date;
+            showTasksForSelectedDay();
         });
 
+        calendarView.setOnMonthChangedListener((widget, date) -> {
+            ensureIndexWindow();
+            markTasksInCalendar();
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (tasksListener != null) {
+            tasksListener.remove();
+        }
+        indexExecutor.shutdownNow();
+    }
+
+    private void onIndexBuilt(TaskDayIndex built) {
+        if (isDestroyed()) return;
+
+        dayIndex = built;
+        // Mesec je mogao da se promeni dok se indeks pravio
+        ensureIndexWindow();
+        markTasksInCalendar();
+        showTasksForSelectedDay();
+    }
+
+    private void applyChanges(List<String> removedIds, List<Task> changedTasks) {
+        if (isDestroyed() || dayIndex == null) return;
+
+        for (String id : removedIds) {
+            dayIndex.remove(id);
+        }
+        for (Task task : changedTasks) {
+            dayIndex.put(task);
+        }
+        markTasksInCalendar();
+        showTasksForSelectedDay();
     }
 
+    private Task toTask(DocumentSnapshot doc) {
+        Task task = doc.toObject(Task.class);
+        if (task == null) return null;
+        task.setId(doc.getId());
+        return task;
+    }
 
+    private void showTasksForSelectedDay() {
+        if (selectedDay == null || dayIndex == null) return;
+        int day = (int) EpochDays.toEpochDay(selectedDay.getYear(), selectedDay.getMonth(), selectedDay.getDay());
+        adapter.updateTasks(dayIndex.tasksOn(day));
+    }
 
     public void updateTaskColorsForCategory(Category category) {
-        for (Task task : tasks) {
+        if (dayIndex == null) return;
+
+        for (Task task : dayIndex.allTasks()) {
             if (task.getCategoryId().equals(category.getId())) {
                 task.setCategoryColor(category.getColorHex());
             }
         }
-        markTasksInCalendar(tasks);
+        markTasksInCalendar();
         if (adapter != null) {
             adapter.notifyDataSetChanged();
         }
     }
 
+    // Dani [od, do) vidljivi u kalendaru za trenutni mesec
+    private long[] visibleRange() {
+        CalendarDay month = calendarView.getCurrentDate();
+        long from = EpochDays.toEpochDay(month.getYear(), month.getMonth(), 1) - VISIBLE_PADDING_DAYS;
+        long to = (month.getMonth() == 12
+                ? EpochDays.toEpochDay(month.getYear() + 1, 1, 1)
+                : EpochDays.toEpochDay(month.getYear(), month.getMonth() + 1, 1)) + VISIBLE_PADDING_DAYS;
+        return new long[]{from, to};
+    }
 
-    private void markTasksInCalendar(List<Task> loadedTasks) {
-        calendarView.removeDecorators();
-
-        Map<CalendarDay, Integer> dayColorMap = new HashMap<>();
-
-        for (Task task : loadedTasks) {
-            if (task.getExecutionTime() != null) {
-                Calendar cal = Calendar.getInstance();
-                cal.setTime(task.getExecutionTime().toDate());
-
-                CalendarDay day = CalendarDay.from(
-                        cal.get(Calendar.YEAR),
-                        cal.get(Calendar.MONTH) + 1,
-                        cal.get(Calendar.DAY_OF_MONTH)
-                );
-
-                int color;
-                try {
-                    color = Color.parseColor(task.getCategoryColor());
-                } catch (IllegalArgumentException e) {
-                    color = Color.GRAY;
-                }
+    private void ensureIndexWindow() {
+        if (dayIndex == null) return;
 
+        long[] visible = visibleRange();
+        if (!dayIndex.covers(visible[0], visible[1])) {
+            dayIndex.setWindow(visible[0] - INDEX_MARGIN_DAYS, visible[1] + INDEX_MARGIN_DAYS);
+            showTasksForSelectedDay();
+        }
+    }
 
-                dayColorMap.putIfAbsent(day, color);
+    /**
+     * Označava samo vidljivi mesec, sa jednim dekoratorom po boji.
+     */
+    private void markTasksInCalendar() {
+        if (dayIndex == null) return;
+
+        long[] visible = visibleRange();
+        long from = visible[0];
+        long to = visible[1];
+
+        Map<Integer, HashSet<CalendarDay>> daysByColor = new HashMap<>();
+        for (long day = from; day < to; day++) {
+            Task task = dayIndex.firstTaskOn((int) day);
+            if (task == null) continue;
+
+            int color;
+            try {
+                color = Color.parseColor(task.getCategoryColor());
+            } catch (IllegalArgumentException | NullPointerException e) {
+                color = Color.GRAY;
             }
+
+            int[] ymd = EpochDays.toYearMonthDay(day);
+            daysByColor.computeIfAbsent(color, c -> new HashSet<>())
+                    .add(CalendarDay.from(ymd[0], ymd[1], ymd[2]));
         }
 
-        for (Map.Entry<CalendarDay, Integer> entry : dayColorMap.entrySet()) {
-            calendarView.addDecorator(new EventDecorator(entry.getValue(), entry.getKey()));
+        calendarView.removeDecorators();
+        for (Map.Entry<Integer, HashSet<CalendarDay>> entry : daysByColor.entrySet()) {
+            calendarView.addDecorator(new TaskDayDecorator(entry.getValue(), entry.getKey()));
         }
     }
 
 }
-
-
-
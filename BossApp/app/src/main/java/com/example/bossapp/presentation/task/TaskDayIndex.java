@@ -0,0 +1,140 @@
+package com.example.bossapp.presentation.task;
+
+import android.util.SparseArray;
+
+import com.example.bossapp.business.OccurrenceExpander;
+import com.example.bossapp.data.model.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indeks zadataka po danu (broj dana od 1970-01-01) za kalendar.
+ *
+ * Indeks pokriva samo prozor dana [fromDay, toDay) oko vidljivog meseca: zadatak se
+ * razvija lenjim OccurrenceExpander-om samo u ponavljanja unutar prozora, pa duga
+ * serija ne pravi niz za celo trajanje. U SparseArray-u dan -> id-jevi izbor dana
+ * je O(1). Kada kalendar pređe van prozora, setWindow() ponovo razvija zadatke.
+ *
+ * Nije thread-safe: pravi se u pozadini, a posle predaje koristi samo na main thread-u.
+ */
+public class TaskDayIndex {
+
+    private final SparseArray<List<String>> taskIdsByDay = new SparseArray<>();
+    private final Map<String, int[]> daysByTaskId = new HashMap<>();
+    private final Map<String, Task> tasksById = new HashMap<>();
+    private long fromDay;
+    private long toDay;
+
+    private TaskDayIndex(long fromDay, long toDay) {
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+    }
+
+    public static TaskDayIndex build(List<Task> tasks, long fromDay, long toDay) {
+        TaskDayIndex index = new TaskDayIndex(fromDay, toDay);
+        for (Task task : tasks) {
+            index.put(task);
+        }
+        return index;
+    }
+
+    public boolean covers(long from, long to) {
+        return from >= fromDay && to <= toDay;
+    }
+
+    /**
+     * Pomera prozor i ponovo razvija sve zadatke u njemu.
+     */
+    public void setWindow(long from, long to) {
+        fromDay = from;
+        toDay = to;
+
+        List<Task> tasks = new ArrayList<>(tasksById.values());
+        taskIdsByDay.clear();
+        daysByTaskId.clear();
+        tasksById.clear();
+        for (Task task : tasks) {
+            put(task);
+        }
+    }
+
+    /**
+     * Dodaje zadatak ili zamenjuje postojeći sa istim id-jem.
+     */
+    public void put(Task task) {
+        if (task.getId() == null) return;
+        remove(task.getId());
+        tasksById.put(task.getId(), task);
+
+        OccurrenceExpander expander = OccurrenceExpander.forTask(task);
+        if (expander == null) return;
+
+        int[] days = new int[expander.count(fromDay, toDay)];
+        int i = 0;
+        for (OccurrenceExpander.Occurrence occurrence : expander.between(fromDay, toDay)) {
+            int day = (int) occurrence.getEpochDay();
+            List<String> ids = taskIdsByDay.get(day);
+            if (ids == null) {
+                ids = new ArrayList<>(2);
+                taskIdsByDay.put(day, ids);
+            }
+            ids.add(task.getId());
+            days[i++] = day;
+        }
+        daysByTaskId.put(task.getId(), days);
+    }
+
+    public void remove(String taskId) {
+        tasksById.remove(taskId);
+
+        int[] days = daysByTaskId.remove(taskId);
+        if (days == null) return;
+        for (int day : days) {
+            List<String> ids = taskIdsByDay.get(day);
+            if (ids == null) continue;
+            ids.remove(taskId);
+            if (ids.isEmpty()) taskIdsByDay.remove(day);
+        }
+    }
+
+    public List<Task> tasksOn(int epochDay) {
+        List<Task> result = new ArrayList<>();
+
+        // Izabrani dan može ostati van prozora posle listanja meseci; tada se proverava svaki zadatak
+        if (epochDay < fromDay || epochDay >= toDay) {
+            for (Task task : tasksById.values()) {
+                OccurrenceExpander expander = OccurrenceExpander.forTask(task);
+                if (expander != null && expander.occursOn(epochDay)) {
+                    result.add(task);
+                }
+            }
+            return result;
+        }
+
+        List<String> ids = taskIdsByDay.get(epochDay);
+        if (ids != null) {
+            for (String id : ids) {
+                result.add(tasksById.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Prvi zadatak na datom danu (za boju tačke u kalendaru), ili null.
+     */
+    public Task firstTaskOn(int epochDay) {
+        List<String> ids = taskIdsByDay.get(epochDay);
+        if (ids != null && !ids.isEmpty()) {
+            return tasksById.get(ids.get(0));
+        }
+        return null;
+    }
+
+    public Iterable<Task> allTasks() {
+        return tasksById.values();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bossapp.business;
+
+import com.example.bossapp.data.model.Task;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lokalni testovi za OccurrenceExpander (čist Java, bez Firestore-a).
+ */
+public class OccurrenceExpanderTest {
+    private static final long START_DAY = 20000;
+    private static final long NOON = 12L * 60 * 60 * 1000;
+
+    // Svaka 3 dana od START_DAY do START_DAY + 30 (uključivo): 11 ponavljanja
+    private static OccurrenceExpander everyThirdDay() {
+        return new OccurrenceExpander(EpochDays.toMillis(START_DAY, NOON),
+                EpochDays.toMillis(START_DAY + 30, NOON), 3, Task.RepeatUnit.DAY,
+                Task.TaskStatus.ACTIVE, 5);
+    }
+
+    private static List<Long> days(Iterable<OccurrenceExpander.Occurrence> occurrences) {
+        List<Long> days = new ArrayList<>();
+        for (OccurrenceExpander.Occurrence occurrence : occurrences) {
+            days.add(occurrence.getEpochDay());
+        }
+        return days;
+    }
+
+    @Test
+    public void windowInsideSeries_startsAtFirstOccurrenceInWindow() {
+        OccurrenceExpander expander = everyThirdDay();
+
+        List<Long> days = days(expander.between(START_DAY + 4, START_DAY + 13));
+
+        assertEquals(3, expander.count(START_DAY + 4, START_DAY + 13));
+        assertEquals(3, days.size());
+        assertEquals(Long.valueOf(START_DAY + 6), days.get(0));
+        assertEquals(Long.valueOf(START_DAY + 12), days.get(2));
+        assertEquals(2, expander.between(START_DAY + 4, START_DAY + 13).iterator().next().getIndex());
+    }
+
+    @Test
+    public void windowBeforeStart_isEmpty() {
+        OccurrenceExpander expander = everyThirdDay();
+
+        assertEquals(0, expander.count(START_DAY - 30, START_DAY));
+        assertFalse(expander.iterator(START_DAY - 30, START_DAY).hasNext());
+        // Kraj prozora je isključiv, pa prvi dan ulazi tek kada je toDay posle njega
+        assertEquals(1, expander.count(START_DAY - 30, START_DAY + 1));
+    }
+
+    @Test
+    public void windowAfterEnd_isEmpty() {
+        OccurrenceExpander expander = everyThirdDay();
+
+        assertEquals(0, expander.count(START_DAY + 31, START_DAY + 100));
+        assertFalse(expander.iterator(START_DAY + 31, START_DAY + 100).hasNext());
+        assertEquals(11, expander.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertTrue(expander.occursOn(START_DAY + 30));
+        assertFalse(expander.occursOn(START_DAY + 33));
+    }
+
+    @Test
+    public void overriddenOccurrence_replacesOnlyGivenFields() {
+        OccurrenceExpander expander = everyThirdDay()
+                .override(START_DAY + 3, Task.TaskStatus.DONE, null)
+                .override(START_DAY + 6, null, 12);
+
+        List<OccurrenceExpander.Occurrence> occurrences = new ArrayList<>();
+        for (OccurrenceExpander.Occurrence occurrence : expander.between(START_DAY, START_DAY + 9)) {
+            occurrences.add(occurrence);
+        }
+
+        assertEquals(3, occurrences.size());
+        assertEquals(Task.TaskStatus.ACTIVE, occurrences.get(0).getStatus());
+        assertEquals(Task.TaskStatus.DONE, occurrences.get(1).getStatus());
+        assertEquals(5, occurrences.get(1).getXp());
+        assertEquals(Task.TaskStatus.ACTIVE, occurrences.get(2).getStatus());
+        assertEquals(12, occurrences.get(2).getXp());
+    }
+
+    @Test
+    public void singleDaySeries_hasOneOccurrenceAtStartTime() {
+        long time = EpochDays.toMillis(START_DAY, NOON);
+        OccurrenceExpander expander = new OccurrenceExpander(time, time, 1, Task.RepeatUnit.WEEK,
+                Task.TaskStatus.ACTIVE, 5);
+
+        Iterator<OccurrenceExpander.Occurrence> iterator = expander.iterator(START_DAY - 7, START_DAY + 7);
+        OccurrenceExpander.Occurrence only = iterator.next();
+
+        assertEquals(START_DAY, only.getEpochDay());
+        assertEquals(time, only.getStartMillis());
+        assertFalse(iterator.hasNext());
+        assertEquals(0, expander.count(START_DAY + 1, START_DAY + 7));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void exhaustedIterator_throws() {
+        Iterator<OccurrenceExpander.Occurrence> iterator = everyThirdDay().iterator(START_DAY + 31, START_DAY + 40);
+        iterator.next();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveInterval_isRejected() {
+        new OccurrenceExpander(0, 0, 0, Task.RepeatUnit.DAY, Task.TaskStatus.ACTIVE, 5);
+    }
+}
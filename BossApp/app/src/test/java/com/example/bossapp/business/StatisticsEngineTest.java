@@ -0,0 +1,150 @@
+package com.example.bossapp.business;
+
+import com.example.bossapp.data.model.Task;
+import com.example.bossapp.data.model.UserStatsAggregate;
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lokalni testovi za StatisticsEngine (čist Java, bez Firestore-a).
+ */
+public class StatisticsEngineTest {
+    private static final int TODAY = 20000;
+    private static final long NOON = 12L * 60 * 60 * 1000;
+
+    @Test
+    public void streaks_areComputedFromConsecutiveDoneDays() {
+        StatisticsEngine engine = new StatisticsEngine(TODAY);
+        for (int day : new int[]{TODAY - 10, TODAY - 9, TODAY - 8, TODAY - 1, TODAY}) {
+            engine.add(day, Task.TaskStatus.DONE, Task.Difficulty.EASY, "Work", 5);
+        }
+        // Aktivan dan bez završenog zadatka ne produžava niz
+        engine.add(TODAY - 7, Task.TaskStatus.ACTIVE, Task.Difficulty.EASY, "Work", 5);
+
+        StatisticsManager.Statistics stats = engine.finish();
+
+        assertEquals(3, stats.longestStreak);
+        assertEquals(2, stats.currentStreak);
+        assertEquals(6, stats.activeDays);
+    }
+
+    @Test
+    public void last7DaysXP_coversOnlyTheLastWeekOldestFirst() {
+        StatisticsEngine engine = new StatisticsEngine(TODAY);
+        engine.add(TODAY, Task.TaskStatus.DONE, Task.Difficulty.EASY, null, 10);
+        engine.add(TODAY - 6, Task.TaskStatus.DONE, Task.Difficulty.EASY, null, 4);
+        engine.add(TODAY - 7, Task.TaskStatus.DONE, Task.Difficulty.EASY, null, 99);
+        engine.add(TODAY, Task.TaskStatus.ACTIVE, Task.Difficulty.EASY, null, 50);
+
+        StatisticsManager.Statistics stats = engine.finish();
+
+        assertEquals(7, stats.last7DaysXP.size());
+        assertEquals(4, stats.last7DaysXP.get(0).xp);
+        assertEquals(10, stats.last7DaysXP.get(6).xp);
+        int total = 0;
+        for (StatisticsManager.DailyXP daily : stats.last7DaysXP) total += daily.xp;
+        assertEquals(14, total);
+    }
+
+    @Test
+    public void statusCountsCategoriesAndAverageDifficulty() {
+        StatisticsEngine engine = new StatisticsEngine(TODAY);
+        engine.add(TODAY, Task.TaskStatus.DONE, Task.Difficulty.EASY, "Work", 0);
+        engine.add(TODAY, Task.TaskStatus.DONE, Task.Difficulty.HARD, "Work", 0);
+        engine.add(TODAY, Task.TaskStatus.DONE, Task.Difficulty.VERY_EASY, "Health", 0);
+        engine.add(StatisticsEngine.NO_DAY, Task.TaskStatus.PAUSED, null, "Work", 0);
+        engine.add(StatisticsEngine.NO_DAY, Task.TaskStatus.CANCELED, null, "Work", 0);
+        engine.add(StatisticsEngine.NO_DAY, Task.TaskStatus.NOT_DONE, null, "Work", 0);
+
+        StatisticsManager.Statistics stats = engine.finish();
+
+        assertEquals(6, stats.totalTasks);
+        assertEquals(3, stats.completedTasks);
+        assertEquals(1, stats.pendingTasks);
+        assertEquals(1, stats.canceledTasks);
+        assertEquals(1, stats.notDoneTasks);
+        assertEquals(Integer.valueOf(2), stats.tasksByCategory.get("Work"));
+        assertEquals(Integer.valueOf(1), stats.tasksByCategory.get("Health"));
+        assertEquals((3 + 7 + 1) / 3.0, stats.averageDifficulty, 1e-9);
+        assertEquals(1, stats.activeDays);
+    }
+
+    @Test
+    public void fromAggregate_matchesFullComputation() {
+        List<Task> tasks = Arrays.asList(
+                task(TODAY - 12, Task.TaskStatus.DONE, Task.Difficulty.EXTREME, "Work", 20),
+                task(TODAY - 2, Task.TaskStatus.DONE, Task.Difficulty.EASY, "Work", 6),
+                task(TODAY - 1, Task.TaskStatus.DONE, Task.Difficulty.HARD, "Health", 8),
+                task(TODAY - 1, Task.TaskStatus.DONE, Task.Difficulty.EASY, "Health", 3),
+                task(TODAY, Task.TaskStatus.ACTIVE, Task.Difficulty.EASY, "Work", 3),
+                task(TODAY - 3, Task.TaskStatus.CANCELED, Task.Difficulty.EASY, "Work", 3));
+
+        StatisticsEngine engine = new StatisticsEngine(TODAY);
+        for (Task task : tasks) {
+            int day = (int) EpochDays.toEpochDay(task.getExecutionTime().toDate());
+            engine.add(day, task.getStatus(), task.getDifficulty(), task.getCategoryName(), task.getTotalXP());
+        }
+        StatisticsManager.Statistics expected = engine.finish();
+        StatisticsManager.Statistics actual =
+                StatisticsEngine.fromAggregate(UserStatsAggregate.fromTasks(tasks), TODAY);
+
+        assertEquals(expected.totalTasks, actual.totalTasks);
+        assertEquals(expected.completedTasks, actual.completedTasks);
+        assertEquals(expected.pendingTasks, actual.pendingTasks);
+        assertEquals(expected.canceledTasks, actual.canceledTasks);
+        assertEquals(expected.activeDays, actual.activeDays);
+        assertEquals(expected.longestStreak, actual.longestStreak);
+        assertEquals(expected.currentStreak, actual.currentStreak);
+        assertEquals(expected.tasksByCategory, actual.tasksByCategory);
+        assertEquals(expected.averageDifficulty, actual.averageDifficulty, 1e-9);
+        assertEquals(xpValues(expected), xpValues(actual));
+    }
+
+    @Test
+    public void millionTaskHistory_isComputedInOnePass() {
+        // 1M zadataka na 100k uzastopnih dana posle 1970, po 10 dnevno, poslednji dan je danas
+        int days = 100_000;
+        int today = days - 1;
+        StatisticsEngine engine = new StatisticsEngine(today);
+        for (int i = 0; i < days * 10; i++) {
+            int day = i / 10;
+            Task.TaskStatus status = i % 10 == 0 ? Task.TaskStatus.ACTIVE : Task.TaskStatus.DONE;
+            engine.add(day, status, Task.Difficulty.EASY, i % 2 == 0 ? "Work" : "Health", 1);
+        }
+
+        StatisticsManager.Statistics stats = engine.finish();
+
+        assertEquals(days * 10, stats.totalTasks);
+        assertEquals(days * 9, stats.completedTasks);
+        assertEquals(days, stats.longestStreak);
+        assertEquals(days, stats.currentStreak);
+        assertEquals(days, stats.activeDays);
+        assertEquals(7, stats.last7DaysXP.size());
+        assertEquals(9, stats.last7DaysXP.get(6).xp);
+    }
+
+    private static Task task(int day, Task.TaskStatus status, Task.Difficulty difficulty,
+                             String categoryName, int totalXP) {
+        Task task = new Task();
+        task.setExecutionTime(new Timestamp(new Date(EpochDays.toMillis(day, NOON))));
+        task.setStatus(status);
+        task.setDifficulty(difficulty);
+        task.setCategoryName(categoryName);
+        task.setTotalXP(totalXP);
+        return task;
+    }
+
+    private static List<Integer> xpValues(StatisticsManager.Statistics stats) {
+        List<Integer> values = new ArrayList<>();
+        for (StatisticsManager.DailyXP daily : stats.last7DaysXP) values.add(daily.xp);
+        return values;
+    }
+}